@@ -3,13 +3,15 @@ package com.github.danielflower.mavenplugins.release;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TagBuilder;
+import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.json.simple.JSONObject;
-import org.json.simple.JSONValue;
 
 import java.io.IOException;
 
@@ -17,42 +19,106 @@ public class AnnotatedTag {
     public static final String VERSION = "version";
     public static final String BUILD_NUMBER = "buildNumber";
     private final String name;
-    private final JSONObject message;
+    private final Long buildNumberFromName;
+    private TagMessage message;
     private Ref ref;
+    private ObjectId taggedCommitId;
+    private Loader loader;
 
-    private AnnotatedTag(Ref ref, String name, JSONObject message) {
+    private AnnotatedTag(Ref ref, String name, TagMessage message, ObjectId taggedCommitId) {
         Guard.notBlank("tag name", name);
         Guard.notNull("tag message", message);
         this.ref = ref;
         this.name = name;
         this.message = message;
+        this.taggedCommitId = taggedCommitId;
+        this.buildNumberFromName = null;
+    }
+
+    private AnnotatedTag(Ref ref, long buildNumberFromName, Loader loader) {
+        Guard.notNull("gitTag", ref);
+        Guard.notNull("loader", loader);
+        this.ref = ref;
+        this.name = stripRefPrefix(ref.getName());
+        this.buildNumberFromName = buildNumberFromName;
+        this.loader = loader;
+        if (ref.isPeeled() && ref.getPeeledObjectId() != null) {
+            this.taggedCommitId = ref.getPeeledObjectId();
+        }
     }
 
     public static AnnotatedTag create(String name, String version, long buildNumber) {
-        JSONObject message = new JSONObject();
-        message.put(VERSION, version);
-        message.put(BUILD_NUMBER, String.valueOf(buildNumber));
-        return new AnnotatedTag(null, name, message);
+        return new AnnotatedTag(null, name, new TagMessage(version, buildNumber), null);
     }
 
     public static AnnotatedTag fromRef(Repository repository, Ref gitTag) throws IOException, IncorrectObjectTypeException {
         Guard.notNull("gitTag", gitTag);
 
         RevWalk walk = new RevWalk(repository);
-        JSONObject message;
+        TagMessage message;
+        ObjectId taggedCommitId;
         try {
             ObjectId tagId = gitTag.getObjectId();
             RevTag tag = walk.parseTag(tagId);
-            message = (JSONObject) JSONValue.parse(tag.getFullMessage());
+            message = TagMessage.parse(tag.getFullMessage());
+            RevObject tagged = walk.peel(tag);
+            taggedCommitId = tagged.copy();
         } finally {
             walk.dispose();
         }
-        if (message == null) {
-            message = new JSONObject();
-            message.put(VERSION, "0");
-            message.put(BUILD_NUMBER, "0");
+        return new AnnotatedTag(gitTag, stripRefPrefix(gitTag.getName()), message, taggedCommitId);
+    }
+
+    /**
+     * Creates a tag whose build number is taken from the {@code artifactId-version.buildNumber} tag name. The tag
+     * object is only read by the given loader when the version or the tagged commit is first asked for.
+     */
+    static AnnotatedTag lazy(Ref gitTag, long buildNumberFromName, Loader loader) {
+        return new AnnotatedTag(gitTag, buildNumberFromName, loader);
+    }
+
+    /**
+     * Called by a {@link Loader} with the values read from the tag object.
+     */
+    void loaded(String fullMessage, ObjectId taggedCommitId) {
+        loaded(TagMessage.parse(fullMessage), taggedCommitId);
+    }
+
+    void loaded(String version, long buildNumber, ObjectId taggedCommitId) {
+        loaded(new TagMessage(version, buildNumber), taggedCommitId);
+    }
+
+    private void loaded(TagMessage message, ObjectId taggedCommitId) {
+        this.message = message;
+        this.taggedCommitId = taggedCommitId;
+        this.loader = null;
+    }
+
+    /**
+     * The build number recorded in the tag message, which for lazily created tags may differ from {@link #buildNumber()}
+     * only if the tag was created by hand.
+     */
+    long buildNumberInMessage() {
+        ensureLoaded();
+        return message.buildNumber();
+    }
+
+    boolean isLoaded() {
+        return loader == null;
+    }
+
+    boolean hasTaggedCommitId() {
+        return taggedCommitId != null;
+    }
+
+    private void ensureLoaded() {
+        if (loader != null) {
+            try {
+                loader.load(this);
+            } catch (IOException e) {
+                throw new IllegalStateException("Error while reading the tag " + name, e);
+            }
         }
-        return new AnnotatedTag(gitTag, stripRefPrefix(gitTag.getName()), message);
     }
 
     static String stripRefPrefix(String refName) {
@@ -64,19 +130,41 @@ public class AnnotatedTag {
     }
 
     public String version() {
-        return String.valueOf(message.get(VERSION));
+        ensureLoaded();
+        return message.version();
     }
 
     public long buildNumber() {
-        return Long.parseLong(String.valueOf(message.get(BUILD_NUMBER)));
+        if (buildNumberFromName != null) {
+            return buildNumberFromName;
+        }
+        ensureLoaded();
+        return message.buildNumber();
     }
 
     public Ref saveAtHEAD(Git git) throws GitAPIException {
-        String json = message.toJSONString();
+        String json = message.toJson();
         ref = git.tag().setName(name()).setAnnotated(true).setMessage(json).call();
         return ref;
     }
 
+    /**
+     * The tag object that tags the given commit with this tag, for when many tags are written together.
+     */
+    TagBuilder toTagObject(ObjectId commitId, PersonIdent tagger) {
+        TagBuilder tag = new TagBuilder();
+        tag.setTag(name);
+        tag.setObjectId(commitId, Constants.OBJ_COMMIT);
+        tag.setTagger(tagger);
+        tag.setMessage(message.toJson());
+        return tag;
+    }
+
+    void saved(Ref ref, ObjectId taggedCommitId) {
+        this.ref = ref;
+        this.taggedCommitId = taggedCommitId;
+    }
+
     @Override
     public String toString() {
         return "AnnotatedTag{" +
@@ -102,4 +190,21 @@ public class AnnotatedTag {
     public Ref ref() {
         return ref;
     }
+
+    /**
+     * The commit this tag points to, or null if the tag has not been read from or saved to a repository.
+     */
+    public ObjectId taggedCommitId() {
+        if (taggedCommitId == null) {
+            ensureLoaded();
+        }
+        return taggedCommitId;
+    }
+
+    /**
+     * Reads the tag object behind a lazily created tag.
+     */
+    interface Loader {
+        void load(AnnotatedTag tag) throws IOException;
+    }
 }
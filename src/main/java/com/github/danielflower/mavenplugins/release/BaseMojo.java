@@ -7,11 +7,19 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
+import static java.util.Arrays.asList;
 
 /**
  * @author Roland Hauser sourcepond@gmail.com
@@ -67,6 +75,106 @@ public abstract class BaseMojo extends AbstractMojo {
     @Parameter(alias = "noChangesAction", defaultValue="ReleaseAll", property = "noChangesAction")
     protected NoChangesAction noChangesAction;
 
+    /**
+     * <p>
+     * The number of seconds for which the tags listed from the remote Git repository are cached in the .git
+     * directory, or 0 (the default) to list the remote on every run. This is useful when "next" is run often.
+     * </p>
+     * <p>
+     * The release goal always lists the remote and refreshes the cache, so a cached value is never used to choose
+     * the build number of an actual release.
+     * </p>
+     */
+    @Parameter(alias = "remoteTagCacheSeconds", defaultValue = "0", property = "remoteTagCacheSeconds")
+    protected long remoteTagCacheSeconds;
+
+    /**
+     * The number of seconds to wait for data from the remote Git repository before giving up on a call to it, or 0
+     * for no limit.
+     */
+    @Parameter(alias = "gitReadTimeoutSeconds", defaultValue = "120", property = "gitReadTimeoutSeconds")
+    protected int gitReadTimeoutSeconds;
+
+    /**
+     * The number of seconds to wait for an SSH connection to the remote Git repository to be established, or 0 to
+     * use the read timeout.
+     */
+    @Parameter(alias = "gitConnectTimeoutSeconds", defaultValue = "30", property = "gitConnectTimeoutSeconds")
+    protected int gitConnectTimeoutSeconds;
+
+    /**
+     * The number of times a call to the remote Git repository that failed because of a network error is retried.
+     * Only calls that are safe to repeat are retried: listing the remote tags, and pushing tags (tags that an
+     * earlier attempt did push are then reported as already up to date). Each retry waits for a jittered delay that
+     * doubles with every attempt, starting at {@code gitRetryDelayMillis}.
+     */
+    @Parameter(alias = "gitRetries", defaultValue = "2", property = "gitRetries")
+    protected int gitRetries;
+
+    /**
+     * The longest wait in milliseconds before the first retry of a call to the remote Git repository, which is
+     * doubled for each retry after it. Each wait is a random time between half of this and all of it, so that builds
+     * that failed together do not retry together. Only used when {@code gitRetries} is more than 0.
+     */
+    @Parameter(alias = "gitRetryDelayMillis", defaultValue = "1000", property = "gitRetryDelayMillis")
+    protected long gitRetryDelayMillis;
+
+    /**
+     * The number of threads used to detect which modules have changed, or 0 (the default) for one per processor.
+     * Modules whose previous releases were tagged on the same commits are checked together with one walk of the
+     * history, so this only helps when modules were last released at different times.
+     */
+    @Parameter(alias = "changeDetectionThreads", defaultValue = "0", property = "changeDetectionThreads")
+    protected int changeDetectionThreads;
+
+    /**
+     * How changes to the modules are detected. Possible values: {@code JGit} (the default), which walks the history
+     * in-process, and {@code GitCli}, which runs the {@code git} command line and is much faster on very large
+     * repositories as git can use its commit-graph and changed-path filters. If git cannot be run then JGit is used.
+     */
+    @Parameter(alias = "changeDetector", defaultValue = "JGit", property = "changeDetector")
+    protected ChangeDetector changeDetector;
+
+    private ShallowHistory shallowHistory;
+
+    /**
+     * If true (the default) and the repository is a shallow clone, such as one made with {@code --depth=50}, then
+     * the release goal runs {@code git fetch} to get the tags of previous releases older than the clone, and then to
+     * get more of the history, a few commits at a time, until it reaches those tags. Otherwise, and always for the
+     * next goal, which does not change the repository, every module that changed since the oldest commit of the
+     * clone is treated as changed. Deepening needs the {@code git} command line.
+     */
+    @Parameter(alias = "deepenShallowClones", defaultValue = "true", property = "deepenShallowClones")
+    protected boolean deepenShallowClones;
+
+    /**
+     * The size in KB of each window that JGit reads from a pack file, which must be a power of two of at least 4,
+     * or 0 (the default) for 64 KB when the pack limit is at least 64 MB and JGit's default of 8 KB otherwise.
+     */
+    @Parameter(alias = "packedGitWindowSizeKb", defaultValue = "0", property = "packedGitWindowSizeKb")
+    protected int packedGitWindowSizeKb;
+
+    /**
+     * The most memory in MB that JGit holds in windows of pack files, or 0 (the default) for a quarter of the
+     * maximum heap.
+     */
+    @Parameter(alias = "packedGitLimitMb", defaultValue = "0", property = "packedGitLimitMb")
+    protected int packedGitLimitMb;
+
+    /**
+     * The most memory in MB that JGit holds in its cache of delta bases, or 0 (the default) for a sixteenth of the
+     * maximum heap.
+     */
+    @Parameter(alias = "deltaBaseCacheLimitMb", defaultValue = "0", property = "deltaBaseCacheLimitMb")
+    protected int deltaBaseCacheLimitMb;
+
+    /**
+     * If true, JGit memory maps pack files rather than reading them onto the heap. This is off by default as mapped
+     * files cannot be deleted on Windows until they are garbage collected.
+     */
+    @Parameter(alias = "packedGitMmap", defaultValue = "false", property = "packedGitMmap")
+    protected boolean packedGitMmap;
+
 	@Parameter(property = "disableSshAgent")
 	private boolean disableSshAgent;
 
@@ -99,6 +207,8 @@ public abstract class BaseMojo extends AbstractMojo {
 	@Parameter(property = "passphrase")
 	private String passphrase;
 
+	private SshAgentSessionFactory sshSessionFactory;
+
     final void setSettings(final Settings settings) {
 		this.settings = settings;
 	}
@@ -139,10 +249,117 @@ public abstract class BaseMojo extends AbstractMojo {
 				}
 			}
 
-			JschConfigSessionFactory.setInstance(new SshAgentSessionFactory(log, knownHosts, privateKey, passphrase));
+			sshSessionFactory = new SshAgentSessionFactory(log, knownHosts, privateKey, passphrase);
+			sshSessionFactory.setConnectTimeoutMillis((int) TimeUnit.SECONDS.toMillis(gitConnectTimeoutSeconds));
+			JschConfigSessionFactory.setInstance(sshSessionFactory);
+		}
+	}
+
+	/**
+	 * Disconnects the SSH sessions that were kept open for the remote operations of this execution.
+	 */
+	protected final void closeSshSessions() {
+		if (sshSessionFactory != null) {
+			sshSessionFactory.close();
 		}
 	}
 
+    /**
+     * Configures how the remote is called, then starts listing the remote tags of the versions in this reactor in
+     * the background, using or refreshing the remote tag cache if it is enabled.
+     */
+    protected final void startListingRemoteTags(LocalGitRepo repo, boolean refreshCache) {
+        repo.setRemoteCallPolicy(new RemoteCallPolicy(getLog(), gitReadTimeoutSeconds, gitRetries, gitRetryDelayMillis, new Random()));
+        List<String> versionKeys = new ArrayList<String>();
+        for (MavenProject module : projects) {
+            versionKeys.add(module.getArtifactId() + "-" + module.getVersion().replace("-SNAPSHOT", ""));
+        }
+        repo.limitRemoteTagsTo(versionKeys);
+        if (remoteTagCacheSeconds > 0) {
+            repo.cacheRemoteTags(versionKeys, TimeUnit.SECONDS.toMillis(remoteTagCacheSeconds), refreshCache);
+        }
+        repo.fetchRemoteTagsInBackground();
+    }
+
+    /**
+     * Sizes JGit's pack caches, which only applies to repositories opened afterwards.
+     */
+    protected final void configurePackCache(Log log) throws ValidationException {
+        PackCacheSettings settings = PackCacheSettings.sizedFor(Runtime.getRuntime().maxMemory(),
+            packedGitWindowSizeKb, packedGitLimitMb, deltaBaseCacheLimitMb, packedGitMmap);
+        settings.install();
+        log.debug("JGit pack cache: " + settings);
+    }
+
+    protected static void logPackCacheUsage(Log log) {
+        String usage = PackCacheSettings.usage();
+        if (usage != null) {
+            log.info("JGit pack cache: " + usage);
+        }
+    }
+
+    /**
+     * If the repository is a shallow clone that can be deepened, fetches the tags of the previous releases of the
+     * versions in this reactor that the clone does not have, each with only its own commit so that its files can be
+     * compared with those at HEAD, and the detector returned by {@link #diffDetector(LocalGitRepo)} will deepen the
+     * history when it needs to. The remote tags must already be being listed, but are only waited for if the
+     * repository is a shallow clone.
+     *
+     * @param fetch False if nothing may be fetched into the repository, in which case a shallow clone is only warned about
+     */
+    protected final void prepareShallowClone(LocalGitRepo repo, boolean fetch) throws ValidationException, GitAPIException {
+        Repository repository = repo.git.getRepository();
+        try {
+            if (!ShallowHistory.isShallow(repository)) {
+                return;
+            }
+            if (!fetch || !deepenShallowClones) {
+                getLog().warn("This is a shallow clone, so modules changed before its oldest commit will be treated as changed");
+                return;
+            }
+            if (!GitCliDiffDetector.isAvailable("git") || repo.remoteUrlOrDefault() == null) {
+                getLog().warn("This is a shallow clone that cannot be deepened, so modules changed before its oldest commit will be treated as changed");
+                return;
+            }
+            shallowHistory = new ShallowHistory(repository, "git", repo.remoteUrlOrDefault());
+            List<String> missingTags = new ArrayList<String>();
+            for (MavenProject module : projects) {
+                String versionKey = module.getArtifactId() + "-" + module.getVersion().replace("-SNAPSHOT", "");
+                for (Long buildNumber : repo.remoteTagIndex().buildNumbersForVersion(module.getArtifactId(), module.getVersion().replace("-SNAPSHOT", ""))) {
+                    String tagName = versionKey + "." + buildNumber;
+                    if (repository.exactRef(Constants.R_TAGS + tagName) == null) {
+                        missingTags.add(tagName);
+                    }
+                }
+            }
+            if (!missingTags.isEmpty()) {
+                getLog().info("Fetching " + missingTags.size() + " tags of previous releases that are older than this shallow clone");
+                shallowHistory.fetchTags(missingTags);
+            }
+        } catch (IOException e) {
+            throw new ValidationException("Could not fetch the tags of previous releases into the shallow clone", asList("Could not fetch the tags of previous releases into the shallow clone:", e.toString()));
+        }
+    }
+
+    /**
+     * The configured way of detecting changes, which remembers its answers for the current HEAD.
+     */
+    protected final DiffDetector diffDetector(LocalGitRepo repo) {
+        Repository repository = repo.git.getRepository();
+        if (changeDetector == ChangeDetector.GitCli && GitCliDiffDetector.isAvailable("git")) {
+            GitCliDiffDetector detector = new GitCliDiffDetector(repository.getWorkTree(), "git");
+            detector.deepenShallowHistoryWith(shallowHistory);
+            return new CachingDiffDetector(repository, detector);
+        }
+        if (changeDetector == ChangeDetector.GitCli) {
+            getLog().warn("Could not run git, so JGit will be used to detect changes");
+        }
+        int threads = changeDetectionThreads > 0 ? changeDetectionThreads : Runtime.getRuntime().availableProcessors();
+        TreeWalkingDiffDetector detector = new TreeWalkingDiffDetector(repository, threads);
+        detector.deepenShallowHistoryWith(shallowHistory);
+        return new CachingDiffDetector(repository, detector);
+    }
+
     static void printBigErrorMessageAndThrow(Log log, String terseMessage, List<String> linesToLog) throws MojoExecutionException {
         log.error("");
         log.error("");
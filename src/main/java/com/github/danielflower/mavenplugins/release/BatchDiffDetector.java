@@ -0,0 +1,45 @@
+package com.github.danielflower.mavenplugins.release;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link DiffDetector} that can also check many modules at once, sharing the work between them. By default each
+ * module is checked on its own with {@link #hasChangedSince(String, List, Collection)}, so a detector only needs to
+ * override {@link #changedModules(List)} when it can do better than that.
+ */
+public abstract class BatchDiffDetector implements DiffDetector {
+
+    /**
+     * Finds which of the given modules have changed since any of their tags, as {@link #hasChangedSince(String, List, Collection)}
+     * would for each module.
+     * @return The paths of the modules that have changed
+     */
+    public Set<String> changedModules(List<Module> modules) throws IOException {
+        Set<String> changed = new HashSet<String>();
+        for (Module module : modules) {
+            if (hasChangedSince(module.path, module.childModules, module.tags)) {
+                changed.add(module.path);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return The given detector if it can check many modules at once, otherwise one that checks them one at a time
+     * with the given detector
+     */
+    public static BatchDiffDetector of(final DiffDetector detector) {
+        if (detector instanceof BatchDiffDetector) {
+            return (BatchDiffDetector) detector;
+        }
+        return new BatchDiffDetector() {
+            public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+                return detector.hasChangedSince(modulePath, childModules, tags);
+            }
+        };
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers whether each module had changed in a file in the .git directory, keyed by the HEAD commit, the module's
+ * path and child modules, and the tag objects of its previous releases, so that running the plugin again on the same
+ * commit, such as "next" followed by "release", does not need to detect the changes again. Only the answers for the
+ * current HEAD are kept, and answers for tags that no longer exist are dropped. A file that cannot be read is
+ * ignored and rewritten. Nothing is remembered while the repository is a shallow clone, as answers found from a
+ * history cut short at its boundary may change once the history is deepened.
+ */
+class CachingDiffDetector extends BatchDiffDetector {
+
+    static final String FILE_NAME = "multi-module-release-changes.cache";
+    private static final String HEADER = "# multi-module-maven-release-plugin change detection cache v1";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Repository repo;
+    private final BatchDiffDetector detector;
+
+    CachingDiffDetector(Repository repo, BatchDiffDetector detector) {
+        this.repo = repo;
+        this.detector = detector;
+    }
+
+    public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+        return !changedModules(Collections.singletonList(new Module(modulePath, childModules, tags))).isEmpty();
+    }
+
+    public Set<String> changedModules(List<Module> modules) throws IOException {
+        ObjectId head = repo.resolve(Constants.HEAD);
+        File file = new File(repo.getDirectory(), FILE_NAME);
+        Map<String, Boolean> answers = load(file, head);
+
+        Set<String> changed = new HashSet<String>();
+        List<Module> toDetect = new ArrayList<Module>();
+        for (Module module : modules) {
+            Boolean hasChanged = answers.get(keyOf(module));
+            if (hasChanged == null) {
+                toDetect.add(module);
+            } else if (hasChanged) {
+                changed.add(module.path);
+            }
+        }
+        if (toDetect.isEmpty()) {
+            return changed;
+        }
+
+        Set<String> detected = detector.changedModules(toDetect);
+        changed.addAll(detected);
+        if (ShallowHistory.isShallow(repo)) {
+            return changed;
+        }
+        for (Module module : toDetect) {
+            String key = keyOf(module);
+            if (key != null) {
+                answers.put(key, detected.contains(module.path));
+            }
+        }
+        try {
+            save(file, head, answers);
+        } catch (IOException e) {
+            // Answers that cannot be written are only worked out again next time
+        }
+        return changed;
+    }
+
+    /**
+     * @return The tag object ids, sorted, followed by the module path and its child modules; or null if a tag has
+     * not been saved yet so has no id
+     */
+    private static String keyOf(Module module) {
+        List<String> tagIds = new ArrayList<String>();
+        for (AnnotatedTag tag : module.tags) {
+            if (tag.ref() == null) {
+                return null;
+            }
+            tagIds.add(tag.ref().getObjectId().name());
+        }
+        Collections.sort(tagIds);
+        StringBuilder key = new StringBuilder(join(tagIds, ",")).append(' ').append(module.path);
+        for (String childModule : module.childModules) {
+            key.append('\t').append(childModule);
+        }
+        return key.toString();
+    }
+
+    private static Map<String, Boolean> load(File file, ObjectId head) {
+        Map<String, Boolean> answers = new HashMap<String, Boolean>();
+        if (!file.isFile()) {
+            return answers;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+            try {
+                if (!HEADER.equals(reader.readLine())) {
+                    throw new IOException("Unexpected header");
+                }
+                if (!head.name().equals(reader.readLine())) {
+                    // The answers were for another commit, so none of them can be used
+                    return answers;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // <changed|unchanged> <key>
+                    String[] parts = line.split(" ", 2);
+                    if (parts.length != 2 || !(parts[0].equals("changed") || parts[0].equals("unchanged"))) {
+                        throw new IOException("Unexpected line: " + line);
+                    }
+                    answers.put(parts[1], parts[0].equals("changed"));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            // A corrupt cache only costs detecting the changes again, so start again and overwrite it on save
+            return new HashMap<String, Boolean>();
+        }
+        return answers;
+    }
+
+    private void save(File file, ObjectId head, Map<String, Boolean> answers) throws IOException {
+        Set<String> currentTagIds = new HashSet<String>();
+        for (Ref tag : repo.getRefDatabase().getRefs(Constants.R_TAGS).values()) {
+            currentTagIds.add(tag.getObjectId().name());
+        }
+        for (Iterator<String> keys = answers.keySet().iterator(); keys.hasNext(); ) {
+            String tagIds = keys.next().split(" ", 2)[0];
+            if (tagIds.length() > 0 && !currentTagIds.containsAll(Arrays.asList(tagIds.split(",")))) {
+                keys.remove();
+            }
+        }
+
+        File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF8);
+        try {
+            writer.write(HEADER + "\n");
+            writer.write(head.name() + "\n");
+            for (Map.Entry<String, Boolean> answer : answers.entrySet()) {
+                writer.write((answer.getValue() ? "changed" : "unchanged") + " " + answer.getKey() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String join(List<String> values, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(separator);
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,5 @@
+package com.github.danielflower.mavenplugins.release;
+
+public enum ChangeDetector {
+    JGit, GitCli;
+}
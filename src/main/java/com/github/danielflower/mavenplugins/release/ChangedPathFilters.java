@@ -0,0 +1,190 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A file in the .git directory holding a Bloom filter for each commit of the paths it changed compared with its
+ * first parent, along with every directory above those paths, like the changed-path filters of git's commit-graph
+ * which JGit does not read. A filter that does not contain a module's path proves that the commit did not change the
+ * module, so the commit's trees need not be read. Filters are not built on their own: a commit without one might have
+ * changed anything, and its filter is added from the paths found when the walk compares it with its first parent, so
+ * no commit is compared twice. As commits never change a filter never goes stale. A file that cannot be read is
+ * ignored and rewritten. Filters can be looked up and added by several threads at once.
+ */
+class ChangedPathFilters {
+
+    static final String FILE_NAME = "multi-module-release-changed-paths.cache";
+    private static final String HEADER = "multi-module-maven-release-plugin changed path filters v1";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * As in git, commits that change more paths than this get no filter, and may have changed any path.
+     */
+    static final int MAX_CHANGED_PATHS = 512;
+    private static final byte[] TOO_MANY_CHANGES = new byte[0];
+    private static final int BITS_PER_PATH = 10;
+    private static final int HASHES = 7;
+
+    private final File file;
+    private final Map<ObjectId, byte[]> filters;
+    private volatile boolean dirty;
+
+    private ChangedPathFilters(File file, Map<ObjectId, byte[]> filters, boolean dirty) {
+        this.file = file;
+        this.filters = filters;
+        this.dirty = dirty;
+    }
+
+    static ChangedPathFilters load(Repository repository) {
+        File file = new File(repository.getDirectory(), FILE_NAME);
+        Map<ObjectId, byte[]> filters = new ConcurrentHashMap<ObjectId, byte[]>();
+        if (!file.isFile()) {
+            return new ChangedPathFilters(file, filters, false);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (!HEADER.equals(in.readUTF())) {
+                    throw new IOException("Unexpected header");
+                }
+                int count = in.readInt();
+                byte[] id = new byte[20];
+                for (int i = 0; i < count; i++) {
+                    // <commit id> <filter length> <filter>
+                    in.readFully(id);
+                    byte[] filter = new byte[in.readUnsignedShort()];
+                    in.readFully(filter);
+                    filters.put(ObjectId.fromRaw(id), filter.length == 0 ? TOO_MANY_CHANGES : filter);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            // A corrupt file only costs the filters being built again, so start again and overwrite it on save
+            return new ChangedPathFilters(file, new ConcurrentHashMap<ObjectId, byte[]>(), true);
+        }
+        return new ChangedPathFilters(file, filters, false);
+    }
+
+    /**
+     * @return False if the commit certainly did not change the given path or anything below it, or true if it did or
+     * the commit has no filter
+     */
+    boolean mightHaveChanged(ObjectId commit, String path) {
+        byte[] filter = filters.get(commit);
+        return filter == null || filter == TOO_MANY_CHANGES || mightContain(filter, path);
+    }
+
+    boolean hasFilterFor(ObjectId commit) {
+        return filters.containsKey(commit);
+    }
+
+    /**
+     * Adds the filter of a commit.
+     *
+     * @param changedPaths The files that the commit changed compared with its first parent, which may stop after more
+     *                     than {@link #MAX_CHANGED_PATHS} of them
+     */
+    void add(ObjectId commit, Set<String> changedPaths) {
+        Set<String> paths = new HashSet<String>();
+        for (String changedPath : changedPaths) {
+            String path = changedPath;
+            while (paths.add(path)) {
+                int lastSlash = path.lastIndexOf('/');
+                if (lastSlash < 0) {
+                    break;
+                }
+                path = path.substring(0, lastSlash);
+            }
+        }
+        filters.put(commit.copy(), paths.size() > MAX_CHANGED_PATHS ? TOO_MANY_CHANGES : filterOf(paths));
+        dirty = true;
+    }
+
+    private static byte[] filterOf(Set<String> paths) {
+        byte[] filter = new byte[Math.max(8, (paths.size() * BITS_PER_PATH + 7) / 8)];
+        for (String path : paths) {
+            int[] hashes = hashesOf(path);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = bitFor(hashes, i, filter.length * 8);
+                filter[bit >>> 3] |= 1 << (bit & 7);
+            }
+        }
+        return filter;
+    }
+
+    static boolean mightContain(byte[] filter, String path) {
+        int[] hashes = hashesOf(path);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = bitFor(hashes, i, filter.length * 8);
+            if ((filter[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int bitFor(int[] hashes, int i, int bitCount) {
+        return (int) (((hashes[0] & 0xffffffffL) + i * (hashes[1] & 0xffffffffL)) % bitCount);
+    }
+
+    /**
+     * Two FNV-1a hashes of the path with different offsets, combined as in double hashing to give each of the bits.
+     */
+    private static int[] hashesOf(String path) {
+        byte[] bytes = path.getBytes(UTF8);
+        return new int[] { fnv1a(bytes, 0x811c9dc5), fnv1a(bytes, 0x5bd1e995) | 1 };
+    }
+
+    private static int fnv1a(byte[] bytes, int offset) {
+        int hash = offset;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the filters if any were added.
+     */
+    void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeUTF(HEADER);
+            out.writeInt(filters.size());
+            byte[] id = new byte[20];
+            for (Map.Entry<ObjectId, byte[]> entry : filters.entrySet()) {
+                entry.getKey().copyRawTo(id, 0);
+                out.write(id);
+                out.writeShort(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+}
@@ -2,7 +2,24 @@ package com.github.danielflower.mavenplugins.release;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 public interface DiffDetector {
     boolean hasChangedSince(String modulePath, java.util.List<String> childModules, Collection<AnnotatedTag> tags) throws IOException;
+
+    /**
+     * A module to check for changes with {@link BatchDiffDetector#changedModules(List)}: its path relative to the root
+     * of the repository, the paths of its child modules relative to it, and the tags of its previous releases.
+     */
+    final class Module {
+        final String path;
+        final List<String> childModules;
+        final Collection<AnnotatedTag> tags;
+
+        public Module(String path, List<String> childModules, Collection<AnnotatedTag> tags) {
+            this.path = path;
+            this.childModules = childModules;
+            this.tags = tags;
+        }
+    }
 }
@@ -0,0 +1,161 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Detects changes by running the git command line, which can use git's commit-graph, changed-path filters and
+ * multi-pack index, and so is much faster than JGit on very large repositories.
+ * <p>
+ * The answers are the same as those of {@link TreeWalkingDiffDetector}: a module owns the same paths as in a
+ * {@link ModulePathTrie}, a module whose files at HEAD are the same as at the commit of its tag with the highest build
+ * number has not changed,
+ * and otherwise the history is looked at with {@code --full-history} so that a merge only changes a module if it
+ * differs from all of its parents, and every merged branch is looked at. In a shallow clone, a change found on the
+ * {@link ShallowHistory} boundary may only be there because the boundary commit's parents are missing, so the history
+ * is deepened and looked at again.
+ */
+public class GitCliDiffDetector extends BatchDiffDetector {
+
+    private static final Pattern COMMIT_ID = Pattern.compile("[0-9a-f]{40}");
+
+    private final File workTree;
+    private final String gitExecutable;
+    private ShallowHistory shallowHistory;
+
+    public GitCliDiffDetector(File workTree, String gitExecutable) {
+        this.workTree = workTree;
+        this.gitExecutable = gitExecutable;
+    }
+
+    /**
+     * Deepens the history of a shallow clone when a change is found on its boundary.
+     */
+    void deepenShallowHistoryWith(ShallowHistory shallowHistory) {
+        this.shallowHistory = shallowHistory;
+    }
+
+    /**
+     * @return True if the given git executable can be run
+     */
+    public static boolean isAvailable(String gitExecutable) {
+        try {
+            Process process = new ProcessBuilder(gitExecutable, "--version").redirectErrorStream(true).start();
+            IOUtil.toString(process.getInputStream());
+            return process.waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+        List<String> pathspecs = pathspecsOf(modulePath, childModules);
+        if (isSameAtHead(taggedCommitOf(Reactor.tagWithHighestBuildNumber(tags)), pathspecs)) {
+            return false;
+        }
+        List<String> taggedCommits = new ArrayList<String>();
+        for (AnnotatedTag tag : tags) {
+            taggedCommits.add("^" + taggedCommitOf(tag));
+        }
+
+        List<String> command = new ArrayList<String>(Arrays.asList("log", "--full-history", "--format=%H", "-1", "HEAD"));
+        command.addAll(taggedCommits);
+        command.add("--");
+        command.addAll(pathspecs);
+        String changingCommit;
+        do {
+            changingCommit = null;
+            for (String line : run(command, 0).split("\n")) {
+                if (COMMIT_ID.matcher(line.trim()).matches()) {
+                    changingCommit = line.trim();
+                    break;
+                }
+            }
+        } while (changingCommit != null && isOnShallowBoundary(changingCommit) && shallowHistory.deepenPast(ObjectId.fromString(changingCommit)));
+        return changingCommit != null;
+    }
+
+    private boolean isOnShallowBoundary(String commit) throws IOException {
+        return shallowHistory != null && shallowHistory.boundary().contains(ObjectId.fromString(commit));
+    }
+
+    private static String taggedCommitOf(AnnotatedTag tag) {
+        return (tag.taggedCommitId() != null ? tag.taggedCommitId() : tag.ref().getObjectId()).name();
+    }
+
+    /**
+     * The module's directory, without the first directory on the way to each child module, as that is every path
+     * that {@link ModulePathTrie} skips for the module.
+     */
+    static List<String> pathspecsOf(String modulePath, List<String> childModules) {
+        boolean isRootModule = ".".equals(modulePath);
+        List<String> pathspecs = new ArrayList<String>();
+        pathspecs.add(isRootModule ? "." : modulePath);
+        for (String childModule : childModules) {
+            String path = isRootModule ? childModule : modulePath + "/" + childModule;
+            for (String segment : path.split("/")) {
+                if (segment.length() > 0) {
+                    pathspecs.add(":(exclude)" + segment);
+                    break;
+                }
+            }
+        }
+        return pathspecs;
+    }
+
+    private boolean isSameAtHead(String commit, List<String> pathspecs) throws IOException {
+        List<String> command = new ArrayList<String>(Arrays.asList("diff", "--quiet", commit, "HEAD", "--"));
+        command.addAll(pathspecs);
+        return run(command, 1) != null;
+    }
+
+    private String run(List<String> arguments, int allowedExitCode) throws IOException {
+        return run(workTree, gitExecutable, arguments, allowedExitCode);
+    }
+
+    /**
+     * Runs git in the work tree.
+     * @param allowedExitCode An exit code other than 0 that is not a failure, for which null is returned
+     * @return The output of the command
+     */
+    static String run(File workTree, String gitExecutable, List<String> arguments, int allowedExitCode) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(gitExecutable);
+        command.addAll(arguments);
+        Process process = new ProcessBuilder(command).directory(workTree).redirectErrorStream(true).start();
+        String output;
+        InputStream in = process.getInputStream();
+        try {
+            output = IOUtil.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+        int exitCode;
+        try {
+            exitCode = process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            throw new IOException("Interrupted while running " + command, e);
+        }
+        if (exitCode == 0) {
+            return output;
+        }
+        if (exitCode == allowedExitCode && allowedExitCode != 0) {
+            return null;
+        }
+        throw new IOException("Running " + command + " in " + workTree + " failed with exit code " + exitCode + ": " + output.trim());
+    }
+}
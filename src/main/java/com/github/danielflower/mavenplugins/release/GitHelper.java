@@ -2,33 +2,20 @@ package com.github.danielflower.mavenplugins.release;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.lib.Constants;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class GitHelper {
     public static boolean hasLocalTag(Git repo, String tagToCheck) throws GitAPIException {
-        return tag(repo, new EqualsMatcher(tagToCheck)) != null;
-    }
-
-    public static Ref refStartingWith(Git repo, final String tagPrefix) throws GitAPIException {
-        return tag(repo, new Matcher() {
-            @Override
-            public boolean matches(String tagName) {
-                return tagName.startsWith(tagPrefix);
-            }
-        });
-    }
-
-    private static Ref tag(Git repo, Matcher matcher) throws GitAPIException {
-        for (Ref ref : repo.tagList().call()) {
-            String currentTag = ref.getName().replace("refs/tags/", "");
-            if (matcher.matches(currentTag)) {
-                return ref;
-            }
+        try {
+            return repo.getRepository().getRefDatabase().exactRef(Constants.R_TAGS + tagToCheck) != null;
+        } catch (IOException e) {
+            throw new JGitInternalException("Error while looking up the tag " + tagToCheck, e);
         }
-        return null;
     }
 
     public static String scmUrlToRemote(String scmUrl) throws ValidationException {
@@ -44,21 +31,4 @@ public class GitHelper {
         remote  = remote.replace("file://localhost/", "file:///");
         return remote;
     }
-
-    private interface Matcher {
-        public boolean matches(String tagName);
-    }
-
-    private static class EqualsMatcher implements Matcher {
-        private final String tagToCheck;
-
-        public EqualsMatcher(String tagToCheck) {
-            this.tagToCheck = tagToCheck;
-        }
-
-        @Override
-        public boolean matches(String tagName) {
-            return tagToCheck.equals(tagName);
-        }
-    }
 }
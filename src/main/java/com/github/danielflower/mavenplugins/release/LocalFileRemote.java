@@ -0,0 +1,60 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.util.FS;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Collection;
+
+/**
+ * A remote that is a repository in the local file system, such as a local mirror, whose tags are read in-process
+ * rather than through a transport, so there is no ref advertisement to build and parse. Pushes to it still go
+ * through the transport so that the remote's hooks and configuration apply.
+ */
+class LocalFileRemote {
+
+    private final Repository remote;
+
+    private LocalFileRemote(Repository remote) {
+        this.remote = remote;
+    }
+
+    /**
+     * Opens the remote with the given URL if it is a repository in the local file system, otherwise returns null.
+     */
+    static LocalFileRemote open(String remoteUrl) {
+        if (remoteUrl == null) {
+            return null;
+        }
+        try {
+            URIish uri = new URIish(remoteUrl);
+            if ((uri.getScheme() != null && !uri.getScheme().equals("file")) || uri.getHost() != null || uri.getPath() == null) {
+                return null;
+            }
+            File gitDir = RepositoryCache.FileKey.resolve(new File(uri.getPath()), FS.DETECTED);
+            if (gitDir == null) {
+                return null;
+            }
+            return new LocalFileRemote(new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true).build());
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    Collection<Ref> tags() throws IOException {
+        return remote.getRefDatabase().getRefs(Constants.R_TAGS).values();
+    }
+
+    void close() {
+        remote.close();
+    }
+}
@@ -2,18 +2,29 @@ package com.github.danielflower.mavenplugins.release;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.LsRemoteCommand;
 import org.eclipse.jgit.api.PushCommand;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.api.errors.TransportException;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
-import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static com.github.danielflower.mavenplugins.release.FileUtils.pathOf;
 
@@ -23,12 +34,27 @@ public class LocalGitRepo {
     private final String remoteUrl;
     private boolean hasReverted = false; // A premature optimisation? In the normal case, file reverting occurs twice, which this bool prevents
     private Collection<Ref> remoteTags;
+    private Future<Collection<Ref>> remoteTagsRequest;
+    private RemoteTagIndex remoteTagIndex;
+    private RemoteTagCache remoteTagCache;
+    private Set<String> remoteTagVersionKeys;
+    private long remoteTagCacheMaxAgeMillis;
+    private boolean refreshRemoteTagCache;
+    private ReleaseTagIndex tagIndex;
+    private RemoteCallPolicy remoteCallPolicy = RemoteCallPolicy.noRetries(new SystemStreamLog());
 
     LocalGitRepo(Git git, String remoteUrl) {
         this.git = git;
         this.remoteUrl = remoteUrl;
     }
 
+    /**
+     * Sets the timeout and retries used for calls to the remote, and where the time they take is logged.
+     */
+    void setRemoteCallPolicy(RemoteCallPolicy remoteCallPolicy) {
+        this.remoteCallPolicy = remoteCallPolicy;
+    }
+
     public void errorIfNotClean() throws ValidationException {
         Status status = currentStatus();
         boolean isClean = status.isClean();
@@ -92,26 +118,193 @@ public class LocalGitRepo {
         }
     }
 
+    /**
+     * The local tags, read once and then shared by everything that needs to look up tags during this run.
+     */
+    public ReleaseTagIndex tagIndex() throws GitAPIException {
+        if (tagIndex == null) {
+            tagIndex = ReleaseTagIndex.fromRepository(git);
+        }
+        return tagIndex;
+    }
+
     public boolean hasLocalTag(String tagName) throws GitAPIException {
-        return GitHelper.hasLocalTag(git, tagName);
+        return tagIndex().hasTag(tagName);
+    }
+
+    /**
+     * Pushes all the given tags over a single connection. The push is atomic when the remote supports it, otherwise
+     * the tags are still pushed together but the remote may accept some of them and reject others, in which case
+     * the result of every tag is reported in the thrown exception.
+     * @return The names of the tags that were pushed
+     */
+    List<String> pushTags(final List<Ref> tagRefs) throws GitAPIException, ValidationException {
+        if (tagRefs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, String> results = remoteCallPolicy.run("Pushing " + tagRefs.size() + " tag(s)", new RemoteCallPolicy.Call<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() throws GitAPIException {
+                return pushOverTransport(tagRefs);
+            }
+        });
+
+        List<String> pushed = new ArrayList<String>();
+        List<String> accepted = new ArrayList<String>();
+        List<String> rejected = new ArrayList<String>();
+        for (Map.Entry<String, String> result : results.entrySet()) {
+            if (result.getValue() == null) {
+                pushed.add(result.getKey());
+                accepted.add(" * " + result.getKey());
+            } else {
+                rejected.add(" * " + result.getKey() + ": " + result.getValue());
+            }
+        }
+        if (!rejected.isEmpty()) {
+            String summary = accepted.isEmpty()
+                ? "Could not push the tags to the remote repository, so no tags have been pushed"
+                : "Only some of the tags were accepted by the remote repository";
+            List<String> messages = new ArrayList<String>();
+            messages.add(summary);
+            messages.add("The following tags were rejected:");
+            messages.addAll(rejected);
+            if (!accepted.isEmpty()) {
+                messages.add("The following tags were pushed and may need to be deleted from the remote before releasing again:");
+                messages.addAll(accepted);
+            }
+            throw new ValidationException(summary, messages);
+        }
+        return pushed;
+    }
+
+    /**
+     * Pushes the tags atomically, or if that fails before anything is pushed, such as when the remote does not
+     * support atomic pushes, pushes them again without asking for atomicity. Rejected tags are reported in the push
+     * results rather than thrown, so they are never pushed twice.
+     *
+     * @return The name of each tag mapped to null if the remote accepted it, or the reason it was rejected
+     */
+    private Map<String, String> pushOverTransport(List<Ref> tagRefs) throws GitAPIException {
+        Iterable<PushResult> pushResults;
+        try {
+            pushResults = pushCommand(tagRefs).setAtomic(true).call();
+        } catch (TransportException e) {
+            // This version of JGit does not make the capabilities advertised by the remote visible, so rather than
+            // relying on the wording of its error, any transport error is followed by one push that is not atomic,
+            // which fails in turn if the remote cannot be reached
+            pushResults = pushCommand(tagRefs).call();
+        }
+        Map<String, String> results = new LinkedHashMap<String, String>();
+        for (PushResult result : pushResults) {
+            for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                String tagName = AnnotatedTag.stripRefPrefix(update.getRemoteName());
+                if (update.getStatus() == RemoteRefUpdate.Status.OK || update.getStatus() == RemoteRefUpdate.Status.UP_TO_DATE) {
+                    results.put(tagName, null);
+                } else {
+                    results.put(tagName, update.getStatus()
+                        + (update.getMessage() == null ? "" : " (" + update.getMessage() + ")"));
+                }
+            }
+        }
+        return results;
     }
 
-    public void tagRepoAndPush(AnnotatedTag tag) throws GitAPIException {
-        Ref tagRef = tagRepo(tag);
-        pushTag(tagRef);
+    /**
+     * Starts pushing the given tags on a background thread, as {@link #pushTags(List)} would, so that the push can
+     * happen while the release is being built. Use {@link #await(Future, String)} to get the pushed tag names.
+     */
+    public Future<List<String>> pushTagsInBackground(final List<Ref> tagRefs) {
+        return inBackground("release-plugin-push", new Callable<List<String>>() {
+            @Override
+            public List<String> call() throws GitAPIException, ValidationException {
+                return pushTags(tagRefs);
+            }
+        });
     }
 
-    private void pushTag(Ref tagRef) throws GitAPIException {
-        PushCommand pushCommand = git.push().add(tagRef);
+    private PushCommand pushCommand(List<Ref> tagRefs) {
+        PushCommand pushCommand = remoteCallPolicy.configure(git.push());
+        for (Ref tagRef : tagRefs) {
+            pushCommand.add(tagRef);
+        }
         if (remoteUrl != null) {
             pushCommand.setRemote(remoteUrl);
         }
-        pushCommand.call();
+        return pushCommand;
     }
 
-    public Ref tagRepo(AnnotatedTag tag) throws GitAPIException {
-        Ref tagRef = tag.saveAtHEAD(git);
-        return tagRef;
+    /**
+     * Tags HEAD with all the given tags. The tag objects are written through a single object inserter and the refs
+     * are created in a single batch ref update, and if any of the refs cannot be created then the ones that were
+     * created are removed again so that the repository is never left partly tagged.
+     */
+    public List<Ref> tagRepo(List<AnnotatedTag> tags) throws GitAPIException, ValidationException {
+        Repository repository = git.getRepository();
+        try {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head == null) {
+                throw new NoHeadException("Cannot tag the repository as there is no HEAD commit");
+            }
+            BatchRefUpdate batch = repository.getRefDatabase().newBatchUpdate();
+            PersonIdent tagger = new PersonIdent(repository);
+            ObjectInserter inserter = repository.newObjectInserter();
+            try {
+                for (AnnotatedTag tag : tags) {
+                    ObjectId tagId = inserter.insert(tag.toTagObject(head, tagger));
+                    batch.addCommand(new ReceiveCommand(ObjectId.zeroId(), tagId, Constants.R_TAGS + tag.name()));
+                }
+                inserter.flush();
+            } finally {
+                inserter.close();
+            }
+
+            RevWalk walk = new RevWalk(repository);
+            try {
+                batch.execute(walk, NullProgressMonitor.INSTANCE);
+                List<String> failures = new ArrayList<String>();
+                for (ReceiveCommand command : batch.getCommands()) {
+                    if (command.getResult() != ReceiveCommand.Result.OK) {
+                        failures.add(" * " + AnnotatedTag.stripRefPrefix(command.getRefName()) + ": " + command.getResult()
+                            + (command.getMessage() == null ? "" : " (" + command.getMessage() + ")"));
+                    }
+                }
+                if (!failures.isEmpty()) {
+                    deleteCreatedRefs(repository, walk, batch.getCommands());
+                    String summary = "Could not tag the repository, so no tags have been created";
+                    List<String> messages = new ArrayList<String>();
+                    messages.add(summary);
+                    messages.add("The following tags could not be created:");
+                    messages.addAll(failures);
+                    throw new ValidationException(summary, messages);
+                }
+            } finally {
+                walk.dispose();
+            }
+
+            List<Ref> tagRefs = new ArrayList<Ref>();
+            for (AnnotatedTag tag : tags) {
+                Ref tagRef = repository.getRefDatabase().exactRef(Constants.R_TAGS + tag.name());
+                tag.saved(tagRef, head);
+                if (tagIndex != null) {
+                    tagIndex.add(tagRef);
+                }
+                tagRefs.add(tagRef);
+            }
+            return tagRefs;
+        } catch (IOException e) {
+            throw new JGitInternalException("Error while tagging the repository", e);
+        }
+    }
+
+    private static void deleteCreatedRefs(Repository repository, RevWalk walk, List<ReceiveCommand> commands) throws IOException {
+        for (ReceiveCommand command : commands) {
+            if (command.getResult() == ReceiveCommand.Result.OK) {
+                RefUpdate delete = repository.updateRef(command.getRefName());
+                delete.setExpectedOldObjectId(command.getNewId());
+                delete.setForceUpdate(true);
+                delete.delete(walk);
+            }
+        }
     }
 
     /**
@@ -166,25 +359,179 @@ public class LocalGitRepo {
 
     public List<String> getRemoteTags(List<String> tagNamesToSearchFor) throws GitAPIException {
         List<String> results = new ArrayList<String>();
-        Collection<Ref> remoteTags = allRemoteTags();
-        for (Ref remoteTag : remoteTags) {
-            for (String proposedTag : tagNamesToSearchFor) {
-                if (remoteTag.getName().equals("refs/tags/" + proposedTag)) {
-                    results.add(proposedTag);
-                }
+        RemoteTagIndex index = remoteTagIndex();
+        for (String proposedTag : tagNamesToSearchFor) {
+            if (index.hasTag(proposedTag)) {
+                results.add(proposedTag);
             }
         }
         return results;
     }
 
+    /**
+     * The remote tags, indexed by name and by version the first time they are needed.
+     */
+    public RemoteTagIndex remoteTagIndex() throws GitAPIException {
+        if (remoteTagIndex == null) {
+            remoteTagIndex = new RemoteTagIndex(allRemoteTags());
+        }
+        return remoteTagIndex;
+    }
+
+    /**
+     * Only the remote tags of the given versions are kept from the remote listing, which is all that a reactor
+     * needs to choose build numbers and check its proposed tags. This must be called before the remote tags are
+     * first needed.
+     * @param versionKeys The versions as {@code artifactId-version} without the build number, e.g. "my-artifact-1.2"
+     */
+    public void limitRemoteTagsTo(Collection<String> versionKeys) {
+        this.remoteTagVersionKeys = new HashSet<String>(versionKeys);
+    }
+
+    /**
+     * Keeps the remote's tags of the given versions in a cache in the .git directory, and uses the cached tags instead
+     * of listing the remote while every one of the versions was listed within the given age. When refreshing, the
+     * remote is always listed and the cache is only written. Only the tags of these versions are then known, as with
+     * {@link #limitRemoteTagsTo(Collection)}.
+     * @param versionKeys The versions as {@code artifactId-version} without the build number, e.g. "my-artifact-1.2"
+     */
+    public void cacheRemoteTags(Collection<String> versionKeys, long maxAgeMillis, boolean refresh) {
+        String cacheKey = remoteUrlOrDefault();
+        if (cacheKey == null) {
+            cacheKey = Constants.DEFAULT_REMOTE_NAME;
+        }
+        this.remoteTagCache = RemoteTagCache.load(git.getRepository(), cacheKey);
+        limitRemoteTagsTo(versionKeys);
+        this.remoteTagCacheMaxAgeMillis = maxAgeMillis;
+        this.refreshRemoteTagCache = refresh;
+    }
+
+    /**
+     * Starts listing the remote tags on a background thread, so that the round trip to the remote happens while the
+     * local repository is being analysed. {@link #allRemoteTags()} waits for the result.
+     */
+    public void fetchRemoteTagsInBackground() {
+        if (remoteTags != null || remoteTagsRequest != null) {
+            return;
+        }
+        remoteTagsRequest = inBackground("release-plugin-ls-remote", new Callable<Collection<Ref>>() {
+            @Override
+            public Collection<Ref> call() throws GitAPIException {
+                return lsRemoteTags();
+            }
+        });
+    }
+
     public Collection<Ref> allRemoteTags() throws GitAPIException {
         if (remoteTags == null) {
-            LsRemoteCommand lsRemoteCommand = git.lsRemote().setTags(true).setHeads(false);
-            if (remoteUrl != null) {
-                lsRemoteCommand.setRemote(remoteUrl);
-            }
-            remoteTags = lsRemoteCommand.call();
+            remoteTags = remoteTagsRequest == null ? lsRemoteTags() : awaitRemoteTags();
         }
         return remoteTags;
     }
+
+    private Collection<Ref> awaitRemoteTags() throws GitAPIException {
+        try {
+            return await(remoteTagsRequest, "listing the remote tags");
+        } catch (ValidationException e) {
+            throw new JGitInternalException(e.getMessage(), e);
+        } finally {
+            remoteTagsRequest = null;
+        }
+    }
+
+    private static <T> Future<T> inBackground(String threadName, Callable<T> work) {
+        FutureTask<T> task = new FutureTask<T>(work);
+        Thread thread = new Thread(task, threadName);
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    /**
+     * Waits for work started in the background, throwing what the work threw.
+     */
+    static <T> T await(Future<T> work, String description) throws GitAPIException, ValidationException {
+        try {
+            return work.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JGitInternalException("Interrupted while " + description, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GitAPIException) {
+                throw (GitAPIException) cause;
+            }
+            if (cause instanceof ValidationException) {
+                throw (ValidationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new JGitInternalException("Error while " + description, cause);
+        }
+    }
+
+    private Collection<Ref> lsRemoteTags() throws GitAPIException {
+        if (remoteTagCache == null) {
+            return listRemoteTags();
+        }
+        long now = System.currentTimeMillis();
+        if (!refreshRemoteTagCache) {
+            Collection<Ref> cached = remoteTagCache.tagsIfFresh(remoteTagVersionKeys, remoteTagCacheMaxAgeMillis, now);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Collection<Ref> listed = listRemoteTags();
+        remoteTagCache.update(listed, remoteTagVersionKeys, now);
+        try {
+            remoteTagCache.save();
+        } catch (IOException e) {
+            // A cache that cannot be written only means the remote is listed again next time
+        }
+        return listed;
+    }
+
+    /**
+     * The URL given in the pom, or else the URL of the default remote, or null if neither is set.
+     */
+    String remoteUrlOrDefault() {
+        return remoteUrl != null ? remoteUrl
+            : git.getRepository().getConfig().getString("remote", Constants.DEFAULT_REMOTE_NAME, "url");
+    }
+
+    private Collection<Ref> listRemoteTags() throws GitAPIException {
+        Collection<Ref> tags = remoteCallPolicy.run("Listing the remote tags", new RemoteCallPolicy.Call<Collection<Ref>>() {
+            @Override
+            public Collection<Ref> call() throws GitAPIException {
+                LocalFileRemote localRemote = LocalFileRemote.open(remoteUrlOrDefault());
+                if (localRemote != null) {
+                    try {
+                        return localRemote.tags();
+                    } catch (IOException e) {
+                        throw new TransportException("Error while listing the tags of " + remoteUrlOrDefault(), e);
+                    } finally {
+                        localRemote.close();
+                    }
+                }
+                LsRemoteCommand lsRemoteCommand = remoteCallPolicy.configure(git.lsRemote()).setTags(true).setHeads(false);
+                if (remoteUrl != null) {
+                    lsRemoteCommand.setRemote(remoteUrl);
+                }
+                return lsRemoteCommand.call();
+            }
+        });
+        if (remoteTagVersionKeys == null) {
+            return tags;
+        }
+        // The git protocol supported by JGit has the remote advertise all of its refs before the client can ask
+        // for any, so the tags of other versions can only be dropped here rather than by the remote.
+        List<Ref> tagsOfTheseVersions = new ArrayList<Ref>();
+        for (Ref tag : tags) {
+            if (remoteTagVersionKeys.contains(ReleaseTagIndex.versionKeyOf(AnnotatedTag.stripRefPrefix(tag.getName())))) {
+                tagsOfTheseVersions.add(tag);
+            }
+        }
+        return tagsOfTheseVersions;
+    }
 }
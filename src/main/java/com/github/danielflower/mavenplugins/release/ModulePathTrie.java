@@ -0,0 +1,109 @@
+package com.github.danielflower.mavenplugins.release;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The directories of the modules in a repository, arranged by path segment so that the modules which own a changed
+ * path can be found by following the path once rather than by testing it against each module in turn.
+ * <p>
+ * A module owns the paths below its directory, except that a module with child modules skips every directory on
+ * the way to each child module along with the child module itself, which is what the negated path filter of each
+ * child did when every module was checked with its own tree walk. The root module, at ".", owns every path that it
+ * does not skip.
+ */
+class ModulePathTrie {
+
+    private static class Node {
+        final Map<String, Node> children = new HashMap<String, Node>();
+        final BitSet rootedHere = new BitSet();
+        final BitSet skippedHere = new BitSet();
+    }
+
+    private final Node root = new Node();
+    private int moduleCount;
+
+    /**
+     * @param modulePath The path of the module relative to the root of the repository, or "." for the root
+     * @param childModules The paths of the child modules relative to the module
+     * @return The index of the module, used in the sets returned by {@link #ownersOf(String)}
+     */
+    int add(String modulePath, List<String> childModules) {
+        int index = moduleCount++;
+        boolean isRootModule = ".".equals(modulePath);
+        Node moduleNode = isRootModule ? root : nodeFor(modulePath);
+        moduleNode.rootedHere.set(index);
+        for (String childModule : childModules) {
+            Node node = root;
+            for (String segment : segmentsOf(isRootModule ? childModule : modulePath + "/" + childModule)) {
+                node = childOf(node, segment);
+                node.skippedHere.set(index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return The indexes of the modules that own the given path
+     */
+    BitSet ownersOf(String path) {
+        BitSet owners = (BitSet) root.rootedHere.clone();
+        BitSet skipped = new BitSet();
+        Node node = root;
+        for (String segment : segmentsOf(path)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                break;
+            }
+            owners.or(node.rootedHere);
+            skipped.or(node.skippedHere);
+        }
+        owners.andNot(skipped);
+        return owners;
+    }
+
+    /**
+     * @return True if a module starts, or a module skips a directory, somewhere below the given directory, in which
+     * case its paths do not all have the same owners as the directory itself.
+     */
+    boolean hasModulesBelow(String directory) {
+        Node node = root;
+        for (String segment : segmentsOf(directory)) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return false;
+            }
+        }
+        return !node.children.isEmpty();
+    }
+
+    private Node nodeFor(String path) {
+        Node node = root;
+        for (String segment : segmentsOf(path)) {
+            node = childOf(node, segment);
+        }
+        return node;
+    }
+
+    private static Node childOf(Node node, String segment) {
+        Node child = node.children.get(segment);
+        if (child == null) {
+            child = new Node();
+            node.children.put(segment, child);
+        }
+        return child;
+    }
+
+    private static List<String> segmentsOf(String path) {
+        List<String> segments = new ArrayList<String>();
+        for (String segment : path.split("/")) {
+            if (segment.length() > 0) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+}
@@ -32,8 +32,11 @@ public class NextMojo extends BaseMojo {
         try {
             configureJsch(log);
 
+            configurePackCache(log);
             LocalGitRepo repo = LocalGitRepo.fromCurrentDir(ReleaseMojo.getRemoteUrlOrNullIfNoneSet(project.getOriginalModel().getScm(), project.getModel().getScm()));
-            Reactor reactor = Reactor.fromProjects(log, repo, project, projects, buildNumber, modulesToForceRelease, noChangesAction);
+            startListingRemoteTags(repo, false);
+            prepareShallowClone(repo, false);
+            Reactor reactor = Reactor.fromProjects(log, repo, project, projects, buildNumber, modulesToForceRelease, noChangesAction, diffDetector(repo));
             if (reactor == null) {
                 return;
             }
@@ -50,6 +53,9 @@ public class NextMojo extends BaseMojo {
             printBigErrorMessageAndThrow(log, "Could not release due to a Git error",
                 asList("There was an error while accessing the Git repository. The error returned from git was:",
                     gae.getMessage(), "Stack trace:", exceptionAsString));
+        } finally {
+            logPackCacheUsage(log);
+            closeSshSessions();
         }
     }
 
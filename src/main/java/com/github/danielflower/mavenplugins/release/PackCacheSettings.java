@@ -0,0 +1,97 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+import java.lang.reflect.Method;
+
+import static java.util.Arrays.asList;
+
+/**
+ * The sizes of JGit's process-wide caches of pack file windows and delta bases, which must be installed before the
+ * repository is opened. JGit's defaults of an 8 KB window and a 10 MB limit are far too small for walking the history
+ * and trees of a large repository, so any size given as 0 is worked out from the maximum heap instead.
+ */
+class PackCacheSettings {
+
+    private static final long MB = WindowCacheConfig.MB;
+
+    final int windowSize;
+    final long limit;
+    final int deltaBaseCacheLimit;
+    final boolean mmap;
+
+    private PackCacheSettings(int windowSize, long limit, int deltaBaseCacheLimit, boolean mmap) {
+        this.windowSize = windowSize;
+        this.limit = limit;
+        this.deltaBaseCacheLimit = deltaBaseCacheLimit;
+        this.mmap = mmap;
+    }
+
+    /**
+     * @param maxHeap The maximum heap of the JVM in bytes
+     * @param windowSizeKb The size of each window read from a pack, which JGit requires to be a power of two of at
+     *                     least 4 KB and no more than the limit, or 0 to use 64 KB when the limit is at least 64 MB
+     * @param limitMb The most memory held by open windows, or 0 for a quarter of the heap
+     * @param deltaBaseCacheLimitMb The most memory held by the cache of delta bases, or 0 for a sixteenth of the heap
+     * @param mmap Whether windows are memory mapped rather than read onto the heap
+     */
+    static PackCacheSettings sizedFor(long maxHeap, int windowSizeKb, int limitMb, int deltaBaseCacheLimitMb, boolean mmap) throws ValidationException {
+        WindowCacheConfig defaults = new WindowCacheConfig();
+        long limit = limitMb > 0 ? limitMb * MB : Math.max(defaults.getPackedGitLimit(), maxHeap / 4);
+        int windowSize = windowSizeKb > 0
+            ? windowSizeKb * WindowCacheConfig.KB
+            : (limit >= 64 * MB ? 64 * WindowCacheConfig.KB : defaults.getPackedGitWindowSize());
+        if (windowSizeKb > 0 && (windowSizeKb < 4 || Integer.bitCount(windowSizeKb) != 1 || windowSize > limit)) {
+            String summary = "Invalid packedGitWindowSizeKb: " + windowSizeKb;
+            throw new ValidationException(summary, asList(summary,
+                "The window size must be a power of two of at least 4, such as 64, and no more than the pack limit of "
+                    + (limit / MB) + " MB, or 0 to use the default."));
+        }
+        long deltaBaseCacheLimit = deltaBaseCacheLimitMb > 0
+            ? deltaBaseCacheLimitMb * MB
+            : Math.max(defaults.getDeltaBaseCacheLimit(), maxHeap / 16);
+        return new PackCacheSettings(windowSize, limit, (int) Math.min(Integer.MAX_VALUE, deltaBaseCacheLimit), mmap);
+    }
+
+    /**
+     * Replaces JGit's window cache with one of these sizes, which closes any packs that are already open.
+     */
+    void install() {
+        WindowCacheConfig config = new WindowCacheConfig();
+        config.setPackedGitWindowSize(windowSize);
+        config.setPackedGitLimit(limit);
+        config.setDeltaBaseCacheLimit(deltaBaseCacheLimit);
+        config.setPackedGitMMAP(mmap);
+        config.install();
+    }
+
+    @Override
+    public String toString() {
+        return "window size " + (windowSize / WindowCacheConfig.KB) + " KB, limit " + (limit / MB)
+            + " MB, delta base cache " + (deltaBaseCacheLimit / MB) + " MB, " + (mmap ? "memory mapped" : "not memory mapped");
+    }
+
+    /**
+     * The number of pack files and bytes of windows held open in JGit's window cache. This version of JGit does not
+     * count cache hits and misses, and only makes these numbers visible to its own package, so they are read
+     * reflectively.
+     *
+     * @return A description of what is open, or null if it could not be read
+     */
+    static String usage() {
+        try {
+            Class<?> windowCache = Class.forName("org.eclipse.jgit.internal.storage.file.WindowCache");
+            Method getInstance = windowCache.getDeclaredMethod("getInstance");
+            Method getOpenFiles = windowCache.getDeclaredMethod("getOpenFiles");
+            Method getOpenBytes = windowCache.getDeclaredMethod("getOpenBytes");
+            getInstance.setAccessible(true);
+            getOpenFiles.setAccessible(true);
+            getOpenBytes.setAccessible(true);
+            Object cache = getInstance.invoke(null);
+            long openBytes = (Long) getOpenBytes.invoke(cache);
+            return getOpenFiles.invoke(cache) + " pack files open with " + (openBytes / WindowCacheConfig.KB) + " KB of windows";
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
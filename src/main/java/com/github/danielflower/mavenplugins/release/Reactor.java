@@ -5,7 +5,6 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 
 import java.io.File;
@@ -13,6 +12,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 public class Reactor {
 
@@ -26,15 +26,51 @@ public class Reactor {
         return modulesInBuildOrder;
     }
 
-    public static Reactor fromProjects(Log log, LocalGitRepo gitRepo, MavenProject rootProject, List<MavenProject> projects, Long buildNumber, List<String> modulesToForceRelease, NoChangesAction actionWhenNoChangesDetected) throws ValidationException, GitAPIException, MojoExecutionException {
-        DiffDetector detector = new TreeWalkingDiffDetector(gitRepo.git.getRepository());
+    public static Reactor fromProjects(Log log, LocalGitRepo gitRepo, MavenProject rootProject, List<MavenProject> projects, Long buildNumber, List<String> modulesToForceRelease, NoChangesAction actionWhenNoChangesDetected, DiffDetector detector) throws ValidationException, GitAPIException, MojoExecutionException {
+        ReleaseTagIndex tagIndex = gitRepo.tagIndex();
+        List<List<AnnotatedTag>> previousTagsOfEachProject = previousTagsOf(tagIndex, projects, modulesToForceRelease);
+
+        // Change detection only needs local data, so it is done for every module before the remote tags are needed
+        // for the build numbers, which gives the remote tag listing as long as possible to arrive.
+        List<String> modulePaths = new ArrayList<String>();
+        for (MavenProject project : projects) {
+            modulePaths.add(calculateModulePath(rootProject, project));
+        }
+        Set<String> changedModulePaths = changedModulePaths(detector, projects, modulePaths, previousTagsOfEachProject, modulesToForceRelease);
+
+        List<AnnotatedTag> equivalentTags = new ArrayList<AnnotatedTag>();
+        List<String> reasonsForRelease = new ArrayList<String>();
+        for (int i = 0; i < projects.size(); i++) {
+            MavenProject project = projects.get(i);
+            String artifactId = project.getArtifactId();
+
+            String changedDependency = null;
+            for (int j = 0; j < i && changedDependency == null; j++) {
+                if (equivalentTags.get(j) == null) {
+                    changedDependency = changedDependencyOf(project, projects.get(j));
+                }
+            }
+
+            AnnotatedTag equivalentTag = null;
+            String reasonForRelease = null;
+            if(modulesToForceRelease != null && modulesToForceRelease.contains(artifactId)) {
+                reasonForRelease = "we was asked to forced release";
+            }else if (changedDependency != null) {
+                reasonForRelease = changedDependency + " has changed";
+            } else {
+                equivalentTag = hasChangedSinceLastRelease(previousTagsOfEachProject.get(i), changedModulePaths, modulePaths.get(i));
+            }
+            equivalentTags.add(equivalentTag);
+            reasonsForRelease.add(reasonForRelease);
+        }
+
         List<ReleasableModule> modules = new ArrayList<ReleasableModule>();
         VersionNamer versionNamer = new VersionNamer();
-        for (MavenProject project : projects) {
-            String relativePathToModule = calculateModulePath(rootProject, project);
+        for (int i = 0; i < projects.size(); i++) {
+            MavenProject project = projects.get(i);
             String artifactId = project.getArtifactId();
             String versionWithoutBuildNumber = project.getVersion().replace("-SNAPSHOT", "");
-            List<AnnotatedTag> previousTagsForThisModule = AnnotatedTagFinder.tagsForVersion(gitRepo.git, artifactId, versionWithoutBuildNumber);
+            List<AnnotatedTag> previousTagsForThisModule = previousTagsOfEachProject.get(i);
 
 
             Collection<Long> previousBuildNumbers = new ArrayList<Long>();
@@ -49,48 +85,26 @@ public class Reactor {
 
             VersionName newVersion = versionNamer.name(project.getVersion(), buildNumber, previousBuildNumbers);
 
-            boolean oneOfTheDependenciesHasChanged = false;
-            String changedDependency = null;
-            for (ReleasableModule module : modules) {
-                if (module.willBeReleased()) {
-                    for (Dependency dependency : project.getModel().getDependencies()) {
-                        if (dependency.getGroupId().equals(module.getGroupId()) && dependency.getArtifactId().equals(module.getArtifactId())) {
-                            oneOfTheDependenciesHasChanged = true;
-                            changedDependency = dependency.getArtifactId();
-                            break;
-                        }
-                    }
-                    if (project.getParent() != null
-                            && (project.getParent().getGroupId().equals(module.getGroupId()) && project.getParent().getArtifactId().equals(module.getArtifactId()))) {
-                        oneOfTheDependenciesHasChanged = true;
-                        changedDependency = project.getParent().getArtifactId();
-                        break;
-                    }
-                }
-                if (oneOfTheDependenciesHasChanged) {
-                    break;
-                }
-            }
-
             String equivalentVersion = null;
-
-            if(modulesToForceRelease != null && modulesToForceRelease.contains(artifactId)) {
-                log.info("Releasing " + artifactId + " " + newVersion.releaseVersion() + " as we was asked to forced release.");
-            }else if (oneOfTheDependenciesHasChanged) {
-                log.info("Releasing " + artifactId + " " + newVersion.releaseVersion() + " as " + changedDependency + " has changed.");
+            AnnotatedTag equivalentTag = equivalentTags.get(i);
+            if (reasonsForRelease.get(i) != null) {
+                log.info("Releasing " + artifactId + " " + newVersion.releaseVersion() + " as " + reasonsForRelease.get(i) + ".");
+            } else if (equivalentTag != null) {
+                equivalentVersion = equivalentTag.version() + "." + equivalentTag.buildNumber();
+                log.info("Will use version " + equivalentVersion + " for " + artifactId + " as it has not been changed since that release.");
             } else {
-                AnnotatedTag previousTagThatIsTheSameAsHEADForThisModule = hasChangedSinceLastRelease(previousTagsForThisModule, detector, project, relativePathToModule);
-                if (previousTagThatIsTheSameAsHEADForThisModule != null) {
-                    equivalentVersion = previousTagThatIsTheSameAsHEADForThisModule.version() + "." + previousTagThatIsTheSameAsHEADForThisModule.buildNumber();
-                    log.info("Will use version " + equivalentVersion + " for " + artifactId + " as it has not been changed since that release.");
-                } else {
-                    log.info("Will use version " + newVersion.releaseVersion() + " for " + artifactId + " as it has changed since the last release.");
-                }
+                log.info("Will use version " + newVersion.releaseVersion() + " for " + artifactId + " as it has changed since the last release.");
             }
-            ReleasableModule module = new ReleasableModule(project, newVersion, equivalentVersion, relativePathToModule);
+            ReleasableModule module = new ReleasableModule(project, newVersion, equivalentVersion, modulePaths.get(i));
             modules.add(module);
         }
 
+        try {
+            tagIndex.saveMetadataCache();
+        } catch (IOException e) {
+            log.warn("Could not save the tag metadata cache: " + e.getMessage());
+        }
+
         if (!atLeastOneBeingReleased(modules)) {
             switch (actionWhenNoChangesDetected) {
                 case ReleaseNone:
@@ -111,18 +125,47 @@ public class Reactor {
         return new Reactor(modules);
     }
 
-    private static Collection<Long> getRemoteBuildNumbers(LocalGitRepo gitRepo, String artifactId, String versionWithoutBuildNumber) throws GitAPIException {
-        Collection<Ref> remoteTagRefs = gitRepo.allRemoteTags();
-        Collection<Long> remoteBuildNumbers = new ArrayList<Long>();
-        String tagWithoutBuildNumber = artifactId + "-" + versionWithoutBuildNumber;
-        for (Ref remoteTagRef : remoteTagRefs) {
-            String remoteTagName = remoteTagRef.getName();
-            Long buildNumber = AnnotatedTagFinder.buildNumberOf(tagWithoutBuildNumber, remoteTagName);
-            if (buildNumber != null) {
-                remoteBuildNumbers.add(buildNumber);
+    /**
+     * The artifact ID of the given released module if the project depends on it or has it as its parent, otherwise null.
+     */
+    private static String changedDependencyOf(MavenProject project, MavenProject releasedModule) {
+        for (Dependency dependency : project.getModel().getDependencies()) {
+            if (dependency.getGroupId().equals(releasedModule.getGroupId()) && dependency.getArtifactId().equals(releasedModule.getArtifactId())) {
+                return dependency.getArtifactId();
+            }
+        }
+        if (project.getParent() != null
+                && (project.getParent().getGroupId().equals(releasedModule.getGroupId()) && project.getParent().getArtifactId().equals(releasedModule.getArtifactId()))) {
+            return project.getParent().getArtifactId();
+        }
+        return null;
+    }
+
+    /**
+     * Finds the previous tags of each project. The tagged commits of the tags that change detection may need are read
+     * together, which is much cheaper than reading each tag object on its own.
+     */
+    private static List<List<AnnotatedTag>> previousTagsOf(ReleaseTagIndex tagIndex, List<MavenProject> projects, List<String> modulesToForceRelease) throws MojoExecutionException {
+        List<List<AnnotatedTag>> previousTagsOfEachProject = new ArrayList<List<AnnotatedTag>>();
+        List<AnnotatedTag> tagsToLoad = new ArrayList<AnnotatedTag>();
+        for (MavenProject project : projects) {
+            String versionWithoutBuildNumber = project.getVersion().replace("-SNAPSHOT", "");
+            List<AnnotatedTag> previousTags = tagIndex.tagsForVersion(project.getArtifactId(), versionWithoutBuildNumber);
+            previousTagsOfEachProject.add(previousTags);
+            if (modulesToForceRelease == null || !modulesToForceRelease.contains(project.getArtifactId())) {
+                tagsToLoad.addAll(previousTags);
             }
         }
-        return remoteBuildNumbers;
+        try {
+            tagIndex.loadTaggedCommits(tagsToLoad);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error while reading the tags of previous releases", e);
+        }
+        return previousTagsOfEachProject;
+    }
+
+    private static Collection<Long> getRemoteBuildNumbers(LocalGitRepo gitRepo, String artifactId, String versionWithoutBuildNumber) throws GitAPIException {
+        return gitRepo.remoteTagIndex().buildNumbersForVersion(artifactId, versionWithoutBuildNumber);
     }
 
     private static boolean atLeastOneBeingReleased(List<ReleasableModule> modules) {
@@ -151,17 +194,37 @@ public class Reactor {
         return relativePathToModule;
     }
 
-    static AnnotatedTag hasChangedSinceLastRelease(List<AnnotatedTag> previousTagsForThisModule, DiffDetector detector, MavenProject project, String relativePathToModule) throws MojoExecutionException {
+    /**
+     * Checks every module that has been released before, other than those being forced to release, for changes
+     * since its previous releases. This is done for all of them at once so that the history is walked only once.
+     */
+    private static Set<String> changedModulePaths(DiffDetector detector, List<MavenProject> projects, List<String> modulePaths, List<List<AnnotatedTag>> previousTagsOfEachProject, List<String> modulesToForceRelease) throws MojoExecutionException {
+        List<DiffDetector.Module> modulesToCheck = new ArrayList<DiffDetector.Module>();
+        for (int i = 0; i < projects.size(); i++) {
+            MavenProject project = projects.get(i);
+            List<AnnotatedTag> previousTags = previousTagsOfEachProject.get(i);
+            if (!previousTags.isEmpty() && (modulesToForceRelease == null || !modulesToForceRelease.contains(project.getArtifactId()))) {
+                modulesToCheck.add(new DiffDetector.Module(modulePaths.get(i), project.getModel().getModules(), previousTags));
+            }
+        }
         try {
-            if (previousTagsForThisModule.size() == 0) return null;
-            boolean hasChanged = detector.hasChangedSince(relativePathToModule, project.getModel().getModules(), previousTagsForThisModule);
-            return hasChanged ? null : tagWithHighestBuildNumber(previousTagsForThisModule);
+            return BatchDiffDetector.of(detector).changedModules(modulesToCheck);
         } catch (Exception e) {
-            throw new MojoExecutionException("Error while detecting whether or not " + project.getArtifactId() + " has changed since the last release", e);
+            throw new MojoExecutionException("Error while detecting which modules have changed since their last release", e);
         }
     }
 
-    private static AnnotatedTag tagWithHighestBuildNumber(List<AnnotatedTag> tags) {
+    static AnnotatedTag hasChangedSinceLastRelease(List<AnnotatedTag> previousTagsForThisModule, Set<String> changedModulePaths, String relativePathToModule) {
+        if (previousTagsForThisModule.size() == 0) return null;
+        boolean hasChanged = changedModulePaths.contains(relativePathToModule);
+        return hasChanged ? null : tagWithHighestBuildNumber(previousTagsForThisModule);
+    }
+
+    /**
+     * @return The tag of the previous release that an unchanged module is given, which the change detectors compare
+     * HEAD with
+     */
+    static AnnotatedTag tagWithHighestBuildNumber(Collection<AnnotatedTag> tags) {
         AnnotatedTag cur = null;
         for (AnnotatedTag tag : tags) {
             if (cur == null || tag.buildNumber() > cur.buildNumber()) {
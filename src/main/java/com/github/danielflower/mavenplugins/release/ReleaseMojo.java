@@ -8,6 +8,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.settings.io.DefaultSettingsWriter;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
 
 import java.io.File;
 import java.io.IOException;
@@ -15,6 +16,7 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import static java.util.Arrays.asList;
 
@@ -107,10 +109,13 @@ public class ReleaseMojo extends BaseMojo {
             configureJsch(log);
 
 
+            configurePackCache(log);
             LocalGitRepo repo = LocalGitRepo.fromCurrentDir(getRemoteUrlOrNullIfNoneSet(project.getOriginalModel().getScm(), project.getModel().getScm()));
+            startListingRemoteTags(repo, true);
             repo.errorIfNotClean();
+            prepareShallowClone(repo, true);
 
-            Reactor reactor = Reactor.fromProjects(log, repo, project, projects, buildNumber, modulesToForceRelease, noChangesAction);
+            Reactor reactor = Reactor.fromProjects(log, repo, project, projects, buildNumber, modulesToForceRelease, noChangesAction, diffDetector(repo));
             if (reactor == null) {
                 return;
             }
@@ -122,8 +127,12 @@ public class ReleaseMojo extends BaseMojo {
             // Do this before running the maven build in case the build uploads some artifacts and then fails. If it is
             // not tagged in a half-failed build, then subsequent releases will re-use a version that is already in Nexus
             // and so fail. The downside is that failed builds result in tags being pushed.
-            tagAndPushRepo(log, repo, proposedTags);
+            // The push happens while the build runs, and is always waited for: the release fails after the build if the
+            // push failed, and if the build fails the tags that had already been pushed are reported.
+            List<Ref> tagRefs = tagRepo(log, repo, proposedTags);
+            Future<List<String>> pushedTags = pushTags ? repo.pushTagsInBackground(tagRefs) : null;
 
+            boolean buildSucceeded = false;
             try {
             	final ReleaseInvoker invoker = new ReleaseInvoker(getLog(), project);
             	invoker.setGlobalSettings(globalSettings);
@@ -141,8 +150,17 @@ public class ReleaseMojo extends BaseMojo {
             	invoker.setSkipTests(skipTests);
                 invoker.runMavenBuild(reactor);
                 revertChanges(log, repo, changedFiles, true); // throw if you can't revert as that is the root problem
+                buildSucceeded = true;
             } finally {
                 revertChanges(log, repo, changedFiles, false); // warn if you can't revert but keep throwing the original exception so the root cause isn't lost
+                if (!buildSucceeded && pushedTags != null) {
+                    reportPushAfterFailedBuild(log, pushedTags);
+                }
+            }
+            if (pushedTags != null) {
+                for (String pushedTag : LocalGitRepo.await(pushedTags, "pushing the tags")) {
+                    log.info("Pushed tag " + pushedTag);
+                }
             }
 
 
@@ -164,17 +182,36 @@ public class ReleaseMojo extends BaseMojo {
 
             printBigErrorMessageAndThrow(log, e.getMessage(),
                     asList("There was an error while creating temporary settings file. The error was:", e.getMessage(), "Stack trace:", exceptionAsString));
+        } finally {
+            logPackCacheUsage(log);
+            closeSshSessions();
         }
     }
 
-    private void tagAndPushRepo(Log log, LocalGitRepo repo, List<AnnotatedTag> proposedTags) throws GitAPIException {
+    private static List<Ref> tagRepo(Log log, LocalGitRepo repo, List<AnnotatedTag> proposedTags) throws GitAPIException, ValidationException {
         for (AnnotatedTag proposedTag : proposedTags) {
             log.info("About to tag the repository with " + proposedTag.name());
-            if (pushTags) {
-                repo.tagRepoAndPush(proposedTag);
-            } else {
-                repo.tagRepo(proposedTag);
+        }
+        return repo.tagRepo(proposedTags);
+    }
+
+    /**
+     * Waits for the tags to be pushed and reports which were, without throwing so that the build failure is the
+     * error that is reported.
+     */
+    private static void reportPushAfterFailedBuild(Log log, Future<List<String>> pushedTags) {
+        try {
+            List<String> pushed = LocalGitRepo.await(pushedTags, "pushing the tags");
+            log.warn("The release build failed, but the following tags had already been pushed:");
+            for (String pushedTag : pushed) {
+                log.warn(" * " + pushedTag);
+            }
+        } catch (ValidationException e) {
+            for (String message : e.getMessages()) {
+                log.warn(message);
             }
+        } catch (Exception e) {
+            log.warn("The tags may not have been pushed: " + e.getMessage());
         }
     }
 
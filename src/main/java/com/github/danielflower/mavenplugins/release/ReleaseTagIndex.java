@@ -0,0 +1,211 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.lib.AsyncObjectLoaderQueue;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tags of a repository, read from the ref database once and grouped by the {@code artifactId-version} part
+ * of the tag name so that each module can find its previous releases without scanning every ref again.
+ */
+public class ReleaseTagIndex {
+
+    private final Repository repository;
+    private final TagMetadataCache metadataCache;
+    private final Map<String, Ref> tagsByName = new HashMap<String, Ref>();
+    private final Map<String, List<Ref>> tagsByVersion = new HashMap<String, List<Ref>>();
+
+    ReleaseTagIndex(Repository repository, TagMetadataCache metadataCache, Collection<Ref> tagRefs) {
+        this.repository = repository;
+        this.metadataCache = metadataCache;
+        for (Ref tagRef : tagRefs) {
+            add(tagRef);
+        }
+    }
+
+    /**
+     * Reads the tags straight from the ref database, which gives them in name order without the copying and sorting
+     * done by {@code git tag --list}. They are indexed in reverse name order, as the tags of a version were found in
+     * before the index was used.
+     */
+    public static ReleaseTagIndex fromRepository(Git git) throws GitAPIException {
+        Repository repository = git.getRepository();
+        List<Ref> tags;
+        try {
+            tags = new ArrayList<Ref>(repository.getRefDatabase().getRefs(Constants.R_TAGS).values());
+        } catch (IOException e) {
+            throw new JGitInternalException("Error while reading the tags", e);
+        }
+        Collections.reverse(tags);
+        return new ReleaseTagIndex(repository, TagMetadataCache.load(repository), tags);
+    }
+
+    /**
+     * Registers a tag created after the index was built, for example one that was just saved by this plugin.
+     */
+    public void add(Ref tagRef) {
+        String tagName = AnnotatedTag.stripRefPrefix(tagRef.getName());
+        tagsByName.put(tagName, tagRef);
+        String versionKey = versionKeyOf(tagName);
+        if (versionKey != null) {
+            List<Ref> refs = tagsByVersion.get(versionKey);
+            if (refs == null) {
+                refs = new ArrayList<Ref>();
+                tagsByVersion.put(versionKey, refs);
+            }
+            refs.add(tagRef);
+        }
+    }
+
+    public boolean hasTag(String tagName) {
+        return tagsByName.containsKey(tagName);
+    }
+
+    public List<Ref> refsForVersion(String artifactId, String versionWithoutBuildNumber) {
+        List<Ref> refs = tagsByVersion.get(artifactId + "-" + versionWithoutBuildNumber);
+        return refs == null ? Collections.<Ref>emptyList() : refs;
+    }
+
+    public List<Long> buildNumbersForVersion(String artifactId, String versionWithoutBuildNumber) {
+        List<Long> buildNumbers = new ArrayList<Long>();
+        String tagWithoutBuildNumber = artifactId + "-" + versionWithoutBuildNumber;
+        for (Ref ref : refsForVersion(artifactId, versionWithoutBuildNumber)) {
+            buildNumbers.add(AnnotatedTagFinder.buildNumberOf(tagWithoutBuildNumber, ref.getName()));
+        }
+        return buildNumbers;
+    }
+
+    /**
+     * Returns the tags for the given version without reading the tag objects; these are read from the metadata
+     * cache or the object database only when a tag's version or tagged commit is needed.
+     */
+    public List<AnnotatedTag> tagsForVersion(String artifactId, String versionWithoutBuildNumber) {
+        List<AnnotatedTag> results = new ArrayList<AnnotatedTag>();
+        String tagWithoutBuildNumber = artifactId + "-" + versionWithoutBuildNumber;
+        for (Ref tag : refsForVersion(artifactId, versionWithoutBuildNumber)) {
+            results.add(AnnotatedTag.lazy(tag, AnnotatedTagFinder.buildNumberOf(tagWithoutBuildNumber, tag.getName()), loader));
+        }
+        return results;
+    }
+
+    /**
+     * Makes sure the tagged commit of each of the given tags is known, which is what change detection needs.
+     * Tags found in the metadata cache are filled from it; the rest are queued into a single object reader so the
+     * object database can load them in bulk (and asynchronously where the storage supports it) rather than setting
+     * up a reader per tag.
+     */
+    public void loadTaggedCommits(Collection<AnnotatedTag> tags) throws IOException {
+        List<AnnotatedTag> toLoad = new ArrayList<AnnotatedTag>();
+        for (AnnotatedTag tag : tags) {
+            if (!tag.isLoaded() && !tag.hasTaggedCommitId()) {
+                toLoad.add(tag);
+            }
+        }
+        load(toLoad);
+    }
+
+    private void load(Collection<AnnotatedTag> tags) throws IOException {
+        Map<ObjectId, List<AnnotatedTag>> toRead = new HashMap<ObjectId, List<AnnotatedTag>>();
+        for (AnnotatedTag tag : tags) {
+            ObjectId tagId = tag.ref().getObjectId();
+            TagMetadataCache.Entry cached = metadataCache.get(tagId);
+            if (cached != null) {
+                tag.loaded(cached.version, cached.buildNumber, cached.taggedCommitId);
+                continue;
+            }
+            List<AnnotatedTag> tagsWithThisId = toRead.get(tagId);
+            if (tagsWithThisId == null) {
+                tagsWithThisId = new ArrayList<AnnotatedTag>();
+                toRead.put(tagId, tagsWithThisId);
+            }
+            tagsWithThisId.add(tag);
+        }
+        if (toRead.isEmpty()) {
+            return;
+        }
+
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk walk = new RevWalk(reader);
+        try {
+            AsyncObjectLoaderQueue<ObjectId> queue = reader.open(toRead.keySet(), true);
+            try {
+                while (queue.next()) {
+                    ObjectId objectId = queue.getCurrent();
+                    ObjectLoader object = queue.open();
+                    String fullMessage;
+                    ObjectId taggedCommitId;
+                    if (object.getType() == Constants.OBJ_TAG) {
+                        RevTag revTag = RevTag.parse(walk, object.getCachedBytes());
+                        fullMessage = revTag.getFullMessage();
+                        // the type of the tagged object is in the tag header, so only a tag of a tag needs another read
+                        RevObject tagged = revTag.getObject();
+                        taggedCommitId = (tagged instanceof RevTag ? walk.peel(tagged) : tagged).copy();
+                    } else {
+                        // a lightweight tag has no message and points straight at the commit
+                        fullMessage = "";
+                        taggedCommitId = objectId.copy();
+                    }
+                    for (AnnotatedTag tag : toRead.get(objectId)) {
+                        tag.loaded(fullMessage, taggedCommitId);
+                        metadataCache.put(objectId, new TagMetadataCache.Entry(taggedCommitId, tag.version(), tag.buildNumberInMessage()));
+                    }
+                }
+            } finally {
+                queue.release();
+            }
+        } finally {
+            walk.dispose();
+            reader.close();
+        }
+    }
+
+    private final AnnotatedTag.Loader loader = new AnnotatedTag.Loader() {
+        @Override
+        public void load(AnnotatedTag tag) throws IOException {
+            ReleaseTagIndex.this.load(Collections.singletonList(tag));
+        }
+    };
+
+    /**
+     * Persists the metadata of any tags that had to be read from the object database during this run, so that
+     * later runs do not need to read them again.
+     */
+    public void saveMetadataCache() throws IOException {
+        metadataCache.save(tagsByName.values());
+    }
+
+    /**
+     * Returns the tag name without its trailing build number, e.g. "my-artifact-1.2" for "my-artifact-1.2.3", or
+     * null if the tag name does not end with a build number.
+     */
+    static String versionKeyOf(String tagName) {
+        int lastDot = tagName.lastIndexOf('.');
+        if (lastDot <= 0) {
+            return null;
+        }
+        try {
+            Long.parseLong(tagName.substring(lastDot + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return tagName.substring(0, lastDot);
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.api.TransportCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.TransportException;
+
+import java.util.Random;
+
+/**
+ * How calls to the remote Git repository are made: the read timeout given to each transport, and how often a call
+ * that failed because of the network is retried. Retries wait for an exponentially growing, jittered delay so that
+ * a struggling server is not hit again straight away. Only calls that can safely be repeated should be retried,
+ * such as listing the remote's tags or pushing tags, which the remote reports as up to date if an earlier attempt
+ * did reach it. The time taken by every attempt is logged so that a slow remote can be told apart from a slow build.
+ */
+class RemoteCallPolicy {
+
+    interface Call<T> {
+        T call() throws GitAPIException;
+    }
+
+    private final Log log;
+    private final int readTimeoutSeconds;
+    private final int retries;
+    private final long initialBackoffMillis;
+    private final Random random;
+
+    RemoteCallPolicy(Log log, int readTimeoutSeconds, int retries, long initialBackoffMillis, Random random) {
+        this.log = log;
+        this.readTimeoutSeconds = readTimeoutSeconds;
+        this.retries = retries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.random = random;
+    }
+
+    /**
+     * A policy with no timeout and no retries, as plain JGit calls have.
+     */
+    static RemoteCallPolicy noRetries(Log log) {
+        return new RemoteCallPolicy(log, 0, 0, 0, new Random());
+    }
+
+    <C extends TransportCommand<C, ?>> C configure(C command) {
+        if (readTimeoutSeconds > 0) {
+            command.setTimeout(readTimeoutSeconds);
+        }
+        return command;
+    }
+
+    <T> T run(String description, Call<T> call) throws GitAPIException {
+        for (int attempt = 1; ; attempt++) {
+            long start = System.currentTimeMillis();
+            try {
+                T result = call.call();
+                log.info(description + " took " + (System.currentTimeMillis() - start) + "ms"
+                    + (attempt > 1 ? " on attempt " + attempt : ""));
+                return result;
+            } catch (TransportException e) {
+                long duration = System.currentTimeMillis() - start;
+                if (attempt > retries) {
+                    log.warn(description + " failed after " + duration + "ms on attempt " + attempt + ": " + e.getMessage());
+                    throw e;
+                }
+                long delay = backoffBeforeAttempt(attempt + 1);
+                log.warn(description + " failed after " + duration + "ms on attempt " + attempt + ": " + e.getMessage()
+                    + " - retrying in " + delay + "ms");
+                sleep(delay);
+            }
+        }
+    }
+
+    long backoffBeforeAttempt(int attempt) {
+        long maxDelay = initialBackoffMillis << Math.min(attempt - 2, 16);
+        return maxDelay / 2 + (long) (random.nextDouble() * (maxDelay / 2));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JGitInternalException("Interrupted while waiting to retry a call to the remote repository", e);
+        }
+    }
+}
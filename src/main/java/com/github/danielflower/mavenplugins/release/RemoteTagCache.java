@@ -0,0 +1,151 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A file in the .git directory that remembers the release tags a remote had, with one file per remote URL. Only
+ * the tags of the versions that runs have asked about are kept, each version with the time it was last listed from
+ * the remote, so a run can tell whether the cache is fresh by looking at just the versions in its own reactor.
+ * A file that cannot be read is ignored and rewritten.
+ */
+class RemoteTagCache {
+
+    static final String DIRECTORY_NAME = "multi-module-release-remote-tags";
+    private static final String HEADER = "# multi-module-maven-release-plugin remote tag cache v1";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final String remoteUrl;
+    private final Map<String, Long> listedAt;
+    private final Map<String, ObjectId> tags;
+
+    private RemoteTagCache(File file, String remoteUrl, Map<String, Long> listedAt, Map<String, ObjectId> tags) {
+        this.file = file;
+        this.remoteUrl = remoteUrl;
+        this.listedAt = listedAt;
+        this.tags = tags;
+    }
+
+    static RemoteTagCache load(Repository repository, String remoteUrl) {
+        String fileName = ObjectId.fromRaw(Constants.newMessageDigest().digest(remoteUrl.getBytes(UTF8))).name();
+        File file = new File(new File(repository.getDirectory(), DIRECTORY_NAME), fileName);
+        Map<String, Long> listedAt = new TreeMap<String, Long>();
+        Map<String, ObjectId> tags = new TreeMap<String, ObjectId>();
+        if (!file.isFile()) {
+            return new RemoteTagCache(file, remoteUrl, listedAt, tags);
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+            try {
+                if (!HEADER.equals(reader.readLine()) || !remoteUrl.equals(reader.readLine())) {
+                    throw new IOException("Unexpected header");
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // "listed <millis> <version key>" or "tag <tag id> <tag name>"
+                    String[] parts = line.split(" ", 3);
+                    if (parts.length == 3 && parts[0].equals("listed")) {
+                        listedAt.put(parts[2], Long.parseLong(parts[1]));
+                    } else if (parts.length == 3 && parts[0].equals("tag")) {
+                        tags.put(parts[2], ObjectId.fromString(parts[1]));
+                    } else {
+                        throw new IOException("Unexpected line: " + line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            // A corrupt cache only costs a listing of the remote, so start again and overwrite it on save
+            return new RemoteTagCache(file, remoteUrl, new TreeMap<String, Long>(), new TreeMap<String, ObjectId>());
+        }
+        return new RemoteTagCache(file, remoteUrl, listedAt, tags);
+    }
+
+    /**
+     * Returns the cached tags of the given versions, or null if any of the versions was not listed from the remote
+     * within the given age.
+     */
+    Collection<Ref> tagsIfFresh(Collection<String> versionKeys, long maxAgeMillis, long now) {
+        for (String versionKey : versionKeys) {
+            Long listed = listedAt.get(versionKey);
+            if (listed == null || now - listed > maxAgeMillis || listed > now) {
+                return null;
+            }
+        }
+        Set<String> wanted = new HashSet<String>(versionKeys);
+        List<Ref> results = new ArrayList<Ref>();
+        for (Map.Entry<String, ObjectId> tag : tags.entrySet()) {
+            if (wanted.contains(ReleaseTagIndex.versionKeyOf(tag.getKey()))) {
+                results.add(new ObjectIdRef.Unpeeled(Ref.Storage.NETWORK, Constants.R_TAGS + tag.getKey(), tag.getValue()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Replaces the cached tags of the given versions with the ones just listed from the remote.
+     */
+    void update(Collection<Ref> listedTags, Collection<String> versionKeys, long now) {
+        Set<String> updated = new HashSet<String>(versionKeys);
+        for (Iterator<String> it = tags.keySet().iterator(); it.hasNext(); ) {
+            if (updated.contains(ReleaseTagIndex.versionKeyOf(it.next()))) {
+                it.remove();
+            }
+        }
+        for (Ref listedTag : listedTags) {
+            String tagName = AnnotatedTag.stripRefPrefix(listedTag.getName());
+            if (updated.contains(ReleaseTagIndex.versionKeyOf(tagName))) {
+                tags.put(tagName, listedTag.getObjectId());
+            }
+        }
+        for (String versionKey : versionKeys) {
+            listedAt.put(versionKey, now);
+        }
+    }
+
+    void save() throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File temp = new File(directory, file.getName() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF8);
+        try {
+            writer.write(HEADER + "\n" + remoteUrl + "\n");
+            for (Map.Entry<String, Long> entry : listedAt.entrySet()) {
+                writer.write("listed " + entry.getValue() + " " + entry.getKey() + "\n");
+            }
+            for (Map.Entry<String, ObjectId> entry : tags.entrySet()) {
+                writer.write("tag " + entry.getValue().name() + " " + entry.getKey() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.Ref;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The tag names advertised by the remote, indexed once so that looking up a tag or the build numbers of a version
+ * does not scan the whole advertisement again.
+ */
+public class RemoteTagIndex {
+
+    private final Set<String> tagNames = new HashSet<String>();
+    private final Map<String, List<Long>> buildNumbersByVersion = new HashMap<String, List<Long>>();
+
+    RemoteTagIndex(Collection<Ref> remoteTagRefs) {
+        for (Ref remoteTagRef : remoteTagRefs) {
+            String tagName = AnnotatedTag.stripRefPrefix(remoteTagRef.getName());
+            if (!tagNames.add(tagName)) {
+                continue;
+            }
+            String versionKey = ReleaseTagIndex.versionKeyOf(tagName);
+            if (versionKey != null) {
+                List<Long> buildNumbers = buildNumbersByVersion.get(versionKey);
+                if (buildNumbers == null) {
+                    buildNumbers = new ArrayList<Long>();
+                    buildNumbersByVersion.put(versionKey, buildNumbers);
+                }
+                buildNumbers.add(Long.parseLong(tagName.substring(versionKey.length() + 1)));
+            }
+        }
+    }
+
+    public boolean hasTag(String tagName) {
+        return tagNames.contains(tagName);
+    }
+
+    public List<Long> buildNumbersForVersion(String artifactId, String versionWithoutBuildNumber) {
+        List<Long> buildNumbers = buildNumbersByVersion.get(artifactId + "-" + versionWithoutBuildNumber);
+        return buildNumbers == null ? Collections.<Long>emptyList() : buildNumbers;
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The history of a shallow clone, such as one made with {@code --depth=50}, which stops at boundary commits whose
+ * parents were not fetched. A walk of the history sees a boundary commit as if it were the first commit and had
+ * added every file, so a walk that reaches a boundary before reaching the tags would treat every module that it had
+ * not yet found to be changed as changed. Instead the history can be deepened from the remote with git, by twice as
+ * many commits each time, until the walk reaches the tags without meeting a boundary.
+ * <p>
+ * Only commits and trees are needed to detect changes, so in a partial clone the deepening uses the clone's own
+ * filter, such as {@code blob:none}, and no blobs are fetched.
+ */
+class ShallowHistory {
+
+    static final int FIRST_DEEPENING = 64;
+
+    private final Repository repo;
+    private final String gitExecutable;
+    private final String remote;
+    private int nextDeepening = FIRST_DEEPENING;
+    private boolean failed;
+
+    /**
+     * @param remote The URL or name of the remote to deepen the history from
+     */
+    ShallowHistory(Repository repo, String gitExecutable, String remote) {
+        this.repo = repo;
+        this.gitExecutable = gitExecutable;
+        this.remote = remote;
+    }
+
+    /**
+     * @return True if the repository is a shallow clone
+     */
+    static boolean isShallow(Repository repo) throws IOException {
+        return !boundaryOf(repo).isEmpty();
+    }
+
+    /**
+     * @return The commits whose parents are missing from the shallow clone, or an empty set if it is not shallow
+     */
+    static Set<ObjectId> boundaryOf(Repository repo) throws IOException {
+        Set<ObjectId> boundary = new HashSet<ObjectId>();
+        File shallowFile = new File(repo.getDirectory(), "shallow");
+        if (shallowFile.isFile()) {
+            for (String line : FileUtils.fileRead(shallowFile, "UTF-8").split("\n")) {
+                if (ObjectId.isId(line.trim())) {
+                    boundary.add(ObjectId.fromString(line.trim()));
+                }
+            }
+        }
+        return boundary;
+    }
+
+    Set<ObjectId> boundary() throws IOException {
+        return boundaryOf(repo);
+    }
+
+    /**
+     * Fetches the given tags with only the commit that each one tags, so that the files at the tagged commits can be
+     * compared with those at HEAD without fetching the history in between.
+     */
+    void fetchTags(List<String> tagNames) throws IOException {
+        List<String> command = new ArrayList<String>(Arrays.asList("fetch", "--quiet", "--no-tags", "--depth=1", remote));
+        for (String tagName : tagNames) {
+            command.add("+" + Constants.R_TAGS + tagName + ":" + Constants.R_TAGS + tagName);
+        }
+        GitCliDiffDetector.run(repo.getWorkTree(), gitExecutable, command, 0);
+    }
+
+    /**
+     * Fetches more of the history if the given boundary commit is still a boundary, unless another thread already has.
+     *
+     * @return True if the commit is no longer a boundary so the walk should be started again, or false if the history
+     * could not be deepened any further
+     */
+    synchronized boolean deepenPast(ObjectId boundaryCommit) throws IOException {
+        if (!boundaryOf(repo).contains(boundaryCommit)) {
+            return true;
+        }
+        if (failed) {
+            return false;
+        }
+        try {
+            GitCliDiffDetector.run(repo.getWorkTree(), gitExecutable,
+                Arrays.asList("fetch", "--quiet", "--no-tags", "--deepen=" + nextDeepening, remote), 0);
+        } catch (IOException e) {
+            // Without the history, the modules changed since the boundary are treated as changed, as before
+            failed = true;
+            return false;
+        }
+        nextDeepening *= 2;
+        return !boundaryOf(repo).contains(boundaryCommit);
+    }
+}
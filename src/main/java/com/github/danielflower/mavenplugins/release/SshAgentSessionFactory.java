@@ -2,9 +2,20 @@ package com.github.danielflower.mavenplugins.release;
 
 import static java.lang.String.format;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig;
+import org.eclipse.jgit.transport.RemoteSession;
+import org.eclipse.jgit.transport.URIish;
 import org.eclipse.jgit.util.FS;
 
 import com.jcraft.jsch.IdentityRepository;
@@ -16,16 +27,26 @@ import com.jcraft.jsch.agentproxy.Connector;
 import com.jcraft.jsch.agentproxy.RemoteIdentityRepository;
 import com.jcraft.jsch.agentproxy.USocketFactory;
 import com.jcraft.jsch.agentproxy.connector.SSHAgentConnector;
+import com.jcraft.jsch.agentproxy.usocket.JNAUSocketFactory;
 import com.jcraft.jsch.agentproxy.usocket.NCUSocketFactory;
 
 /**
  * SSH-Agent enabler.
  *
  * A JschConfigSessionFactory which sets the Preferred authentication method to
- * Publickey, and tries to use a NetCat Socket Factory to reach a ssh-agent
- * process via it's Unix Socket as identified by environment var SSH_AUTH_SOCK.
+ * Publickey, and reaches a ssh-agent process via it's Unix Socket as identified
+ * by environment var SSH_AUTH_SOCK. The socket is opened in-process using JNA,
+ * or where that is not possible, with a NetCat Socket Factory.
+ *
+ * Note that the fallback requires the 'nc' binary installed and available on PATH!
  *
- * Note that this requires the 'nc' binary installed and available on PATH!
+ * Sessions are kept open and shared by all the remote operations of a plugin
+ * execution, so that the connection, key exchange and authentication happen
+ * once per host rather than once per operation. A session counts its users,
+ * and one that no operation is using and that has been idle for too long, or
+ * that is no longer connected, is replaced. A session still in use is only
+ * disconnected once its last user releases it, and {@link #close()}
+ * disconnects them all when the execution finishes.
  *
  * @author Johan Ström johan@pistonlabs.com
  */
@@ -34,6 +55,11 @@ public class SshAgentSessionFactory extends JschConfigSessionFactory {
 	private String knownHostsOrNull;
 	private String identityFile;
 	private String passphraseOrNull;
+	private long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(5);
+	private int connectTimeoutMillis;
+	private final Map<String, SharedSession> sessions = new HashMap<String, SharedSession>();
+	private final List<SharedSession> replacedSessionsInUse = new ArrayList<SharedSession>();
+	private final ThreadLocal<Session> createdSession = new ThreadLocal<Session>();
 
 	public SshAgentSessionFactory(final Log log, final String knownHostsOrNull, final String identityFile,
 			final String passphraseOrNull) {
@@ -55,6 +81,18 @@ public class SshAgentSessionFactory extends JschConfigSessionFactory {
 		this.passphraseOrNull = passphrase;
 	}
 
+	/**
+	 * Limits how long opening a session may take, instead of using the read
+	 * timeout of the transport. Zero keeps the transport's timeout.
+	 */
+	void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
 	String getKnownHostsOrNull() {
 		return knownHostsOrNull;
 	}
@@ -71,13 +109,143 @@ public class SshAgentSessionFactory extends JschConfigSessionFactory {
 	protected void configure(final OpenSshConfig.Host host, final Session sn) {
 	}
 
+	@Override
+	public synchronized RemoteSession getSession(final URIish uri, final CredentialsProvider credentialsProvider,
+			final FS fs, final int tms) throws TransportException {
+		final String key = uri.getUser() + "@" + uri.getHost() + ":" + uri.getPort();
+		final long now = System.currentTimeMillis();
+		SharedSession shared = sessions.get(key);
+		if (shared != null && (!shared.sock.isConnected() || (shared.users == 0 && now - shared.lastUsed > idleTimeoutMillis))) {
+			log.debug(format("Replacing the SSH session to %s as it is no longer usable", key));
+			if (shared.users == 0) {
+				shared.close();
+			} else {
+				replacedSessionsInUse.add(shared);
+			}
+			shared = null;
+		}
+		if (shared == null) {
+			final int timeout = connectTimeoutMillis > 0 ? connectTimeoutMillis : tms;
+			final RemoteSession session;
+			try {
+				session = super.getSession(uri, credentialsProvider, fs, timeout);
+				shared = new SharedSession(session, createdSession.get());
+			} finally {
+				createdSession.remove();
+			}
+			sessions.put(key, shared);
+		}
+		shared.users++;
+		shared.lastUsed = now;
+		return shared;
+	}
+
+	/**
+	 * The session is handed back to {@link #getSession} on the thread that asked for it, as JGit only returns it
+	 * wrapped.
+	 */
+	@Override
+	protected Session createSession(final OpenSshConfig.Host hc, final String user, final String host,
+			final int port, final FS fs) throws JSchException {
+		final Session session = super.createSession(hc, user, host, port, fs);
+		createdSession.set(session);
+		return session;
+	}
+
+	/**
+	 * Called by a transport when it has finished with its session, which stays open for the next transport unless
+	 * it was replaced while in use.
+	 */
+	@Override
+	public synchronized void releaseSession(final RemoteSession session) {
+		if (!(session instanceof SharedSession)) {
+			super.releaseSession(session);
+			return;
+		}
+		final SharedSession shared = (SharedSession) session;
+		shared.users--;
+		shared.lastUsed = System.currentTimeMillis();
+		if (shared.users == 0 && replacedSessionsInUse.remove(shared)) {
+			shared.close();
+		}
+	}
+
+	/**
+	 * Disconnects all the sessions that were opened by this factory.
+	 */
+	public synchronized void close() {
+		for (final SharedSession shared : sessions.values()) {
+			shared.close();
+		}
+		for (final SharedSession shared : replacedSessionsInUse) {
+			shared.close();
+		}
+		sessions.clear();
+		replacedSessionsInUse.clear();
+	}
+
+	synchronized int openSessionCount() {
+		int count = 0;
+		for (final SharedSession shared : sessions.values()) {
+			if (shared.sock.isConnected()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * A session that stays connected when a transport has finished with it, so the next transport can reuse it.
+	 */
+	private static class SharedSession implements RemoteSession {
+		private final RemoteSession session;
+		private final Session sock;
+		private long lastUsed;
+		private int users;
+
+		SharedSession(final RemoteSession session, final Session sock) {
+			this.session = session;
+			this.sock = sock;
+		}
+
+		@Override
+		public Process exec(final String commandName, final int timeout) throws IOException {
+			return session.exec(commandName, timeout);
+		}
+
+		@Override
+		public void disconnect() {
+			// left open for the next transport; the factory disconnects it
+		}
+
+		void close() {
+			session.disconnect();
+		}
+	}
+
+	/**
+	 * Talks to the agent's unix socket in-process through JNA where the C library
+	 * can be loaded, so that no 'nc' process is started, and otherwise falls back
+	 * to 'nc'.
+	 */
+	USocketFactory agentSocketFactory() throws AgentProxyException {
+		try {
+			return new JNAUSocketFactory();
+		} catch (final AgentProxyException e) {
+			log.debug(format("Cannot reach the SSH-agent in-process (%s), so falling back to nc", e.getMessage()));
+		} catch (final LinkageError e) {
+			log.debug(format("Cannot reach the SSH-agent in-process (%s), so falling back to nc", e.getMessage()));
+		}
+		return new NCUSocketFactory();
+	}
+
 	@Override
 	protected JSch createDefaultJSch(final FS fs) throws JSchException {
 		Connector con = null;
 		try {
 			// TODO: add support for others as well, such as page-ant.
 			if (SSHAgentConnector.isConnectorAvailable()) {
-				final USocketFactory usf = new NCUSocketFactory();
+				final USocketFactory usf = agentSocketFactory();
 				con = new SSHAgentConnector(usf);
 			}
 		} catch (final AgentProxyException e) {
@@ -0,0 +1,246 @@
+package com.github.danielflower.mavenplugins.release;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The metadata stored in the message of a release tag, which is a JSON object such as
+ * <code>{"version":"1.2","buildNumber":"3"}</code>.
+ * <p>
+ * Only the version and build number are interpreted. Any other fields are kept as raw JSON so that tags written
+ * by later versions of the plugin can be read, and written again, without losing anything. A message that is not
+ * a JSON object is treated as version "0" and build number 0.
+ * </p>
+ */
+final class TagMessage {
+
+    static final TagMessage NONE = new TagMessage("0", 0, Collections.<String, String>emptyMap());
+
+    private final String version;
+    private final long buildNumber;
+    private final Map<String, String> otherFields;
+
+    TagMessage(String version, long buildNumber) {
+        this(version, buildNumber, Collections.<String, String>emptyMap());
+    }
+
+    private TagMessage(String version, long buildNumber, Map<String, String> otherFields) {
+        Guard.notNull("version", version);
+        this.version = version;
+        this.buildNumber = buildNumber;
+        this.otherFields = otherFields;
+    }
+
+    String version() {
+        return version;
+    }
+
+    long buildNumber() {
+        return buildNumber;
+    }
+
+    /**
+     * The fields other than version and build number, as raw JSON values keyed by field name.
+     */
+    Map<String, String> otherFields() {
+        return otherFields;
+    }
+
+    static TagMessage parse(String message) {
+        if (message == null) {
+            return NONE;
+        }
+        try {
+            return new Parser(message).parseTagMessage();
+        } catch (IllegalArgumentException e) {
+            return NONE;
+        }
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        appendString(json, AnnotatedTag.VERSION).append(':');
+        appendString(json, version).append(',');
+        appendString(json, AnnotatedTag.BUILD_NUMBER).append(':');
+        // the build number is written as a string, as older versions of the plugin did
+        appendString(json, String.valueOf(buildNumber));
+        for (Map.Entry<String, String> field : otherFields.entrySet()) {
+            json.append(',');
+            appendString(json, field.getKey()).append(':').append(field.getValue());
+        }
+        return json.append('}').toString();
+    }
+
+    private static StringBuilder appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Just enough of a JSON parser to read a flat object; nested values are skipped over and kept as raw text.
+     */
+    private static class Parser {
+        private final String json;
+        private int pos;
+
+        Parser(String json) {
+            this.json = json;
+        }
+
+        TagMessage parseTagMessage() {
+            String version = "0";
+            long buildNumber = 0;
+            Map<String, String> otherFields = new LinkedHashMap<String, String>();
+            expect('{');
+            if (!tryConsume('}')) {
+                do {
+                    String name = readString();
+                    expect(':');
+                    skipWhitespace();
+                    int valueStart = pos;
+                    if (AnnotatedTag.VERSION.equals(name)) {
+                        version = peek() == '"' ? readString() : readLiteral();
+                    } else if (AnnotatedTag.BUILD_NUMBER.equals(name)) {
+                        buildNumber = parseBuildNumber(peek() == '"' ? readString() : readLiteral());
+                    } else {
+                        skipValue();
+                        otherFields.put(name, json.substring(valueStart, pos));
+                    }
+                } while (tryConsume(','));
+                expect('}');
+            }
+            skipWhitespace();
+            if (pos != json.length()) {
+                throw new IllegalArgumentException("Unexpected content after the JSON object");
+            }
+            return new TagMessage(version, buildNumber, otherFields.isEmpty() ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(otherFields));
+        }
+
+        private static long parseBuildNumber(String value) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        private void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                char close = c == '{' ? '}' : ']';
+                pos++;
+                if (!tryConsume(close)) {
+                    do {
+                        if (close == '}') {
+                            readString();
+                            expect(':');
+                        }
+                        skipWhitespace();
+                        skipValue();
+                    } while (tryConsume(','));
+                    expect(close);
+                }
+            } else {
+                readLiteral();
+            }
+        }
+
+        private String readLiteral() {
+            skipWhitespace();
+            int start = pos;
+            while (pos < json.length() && "+-.0123456789eEtruefalsn".indexOf(json.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("Expected a value at " + pos);
+            }
+            return json.substring(start, pos);
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (pos >= json.length()) {
+                    throw new IllegalArgumentException("Unterminated string");
+                }
+                char c = json.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= json.length()) {
+                    throw new IllegalArgumentException("Unterminated string");
+                }
+                char escaped = json.charAt(pos++);
+                switch (escaped) {
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > json.length()) {
+                            throw new IllegalArgumentException("Bad unicode escape");
+                        }
+                        value.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+        }
+
+        private char peek() {
+            skipWhitespace();
+            if (pos >= json.length()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return json.charAt(pos);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+            }
+            pos++;
+        }
+
+        private boolean tryConsume(char c) {
+            skipWhitespace();
+            if (pos < json.length() && json.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
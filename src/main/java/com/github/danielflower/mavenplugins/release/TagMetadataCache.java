@@ -0,0 +1,127 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A file in the .git directory that remembers what was read from each annotated tag object, keyed by the
+ * tag's object id. Tag objects never change, so an entry never goes stale; entries are only dropped when the
+ * tag they belong to no longer exists. A file that cannot be read is ignored and rewritten.
+ */
+class TagMetadataCache {
+
+    static final String FILE_NAME = "multi-module-release-tags.cache";
+    private static final String HEADER = "# multi-module-maven-release-plugin tag cache v1";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final Map<ObjectId, Entry> entries;
+    private boolean dirty;
+
+    private TagMetadataCache(File file, Map<ObjectId, Entry> entries, boolean dirty) {
+        this.file = file;
+        this.entries = entries;
+        this.dirty = dirty;
+    }
+
+    static TagMetadataCache load(Repository repository) {
+        File file = new File(repository.getDirectory(), FILE_NAME);
+        Map<ObjectId, Entry> entries = new HashMap<ObjectId, Entry>();
+        if (!file.isFile()) {
+            return new TagMetadataCache(file, entries, false);
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+            try {
+                if (!HEADER.equals(reader.readLine())) {
+                    throw new IOException("Unexpected header");
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // <tag id> <tagged commit id> <build number> <version>
+                    String[] parts = line.split(" ", 4);
+                    if (parts.length != 4) {
+                        throw new IOException("Unexpected line: " + line);
+                    }
+                    entries.put(ObjectId.fromString(parts[0]),
+                        new Entry(ObjectId.fromString(parts[1]), parts[3], Long.parseLong(parts[2])));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            // A corrupt cache only costs a re-read of the tags, so start again and overwrite it on save
+            return new TagMetadataCache(file, new HashMap<ObjectId, Entry>(), true);
+        }
+        return new TagMetadataCache(file, entries, false);
+    }
+
+    Entry get(ObjectId tagId) {
+        return entries.get(tagId);
+    }
+
+    void put(ObjectId tagId, Entry entry) {
+        entries.put(tagId.copy(), entry);
+        dirty = true;
+    }
+
+    /**
+     * Writes the cache if anything was added, dropping entries for tags that are not in the given list.
+     */
+    void save(Collection<Ref> currentTags) throws IOException {
+        Set<ObjectId> current = new HashSet<ObjectId>();
+        for (Ref tag : currentTags) {
+            current.add(tag.getObjectId());
+        }
+        if (entries.keySet().retainAll(current)) {
+            dirty = true;
+        }
+        if (!dirty) {
+            return;
+        }
+        File temp = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF8);
+        try {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (Map.Entry<ObjectId, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                writer.write(entry.getKey().name() + " " + value.taggedCommitId.name() + " " + value.buildNumber + " " + value.version + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    static class Entry {
+        final ObjectId taggedCommitId;
+        final String version;
+        final long buildNumber;
+
+        Entry(ObjectId taggedCommitId, String version, long buildNumber) {
+            this.taggedCommitId = taggedCommitId;
+            this.version = version;
+            this.buildNumber = buildNumber;
+        }
+    }
+}
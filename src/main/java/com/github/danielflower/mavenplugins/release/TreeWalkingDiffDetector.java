@@ -1,66 +1,355 @@
 package com.github.danielflower.mavenplugins.release;
 
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-public class TreeWalkingDiffDetector implements DiffDetector {
+/**
+ * Detects changes by walking the history from HEAD back to the tags of the previous releases.
+ * <p>
+ * A module whose files at HEAD are the same as at the commit of its tag with the highest build number, which is the
+ * release it is given if it has not changed, has not changed. This is found by comparing the tree ids of the
+ * directories on the way to it, skipping its child modules, without walking any history, and means a change that was
+ * later reverted is not a change. Being the same as at an older release is not enough, as the module would then be
+ * given a later release with other files. The history is only walked for the other modules.
+ * <p>
+ * All the modules are checked together: modules whose tags are on the same commits share one walk of the history,
+ * which is usually every module as they are normally released together, and each commit is compared with its parents
+ * only once, with every changed path given to the modules that own it using a {@link ModulePathTrie}. A merge commit
+ * changes a module only if it differs from all of its parents, but the commits of every merged branch are walked,
+ * so a module is also treated as changed if a merged branch changed it even when the merge discarded that change.
+ * Commits that the {@link ChangedPathFilters} show did not change any of the modules being looked for are skipped, and
+ * a commit without a filter gets one from its comparison with its first parent, other than on a shallow boundary.
+ * <p>
+ * Groups of modules with different tagged commits are independent of each other, so they can be checked at the
+ * same time on a pool of threads, each with its own walk, sharing what was found about each commit.
+ * <p>
+ * In a shallow clone, a walk that reaches the {@link ShallowHistory} boundary before the tags deepens the history and
+ * starts again, as the boundary commit would otherwise look as if it added every file. Modules that are the same as
+ * at one of the tagged commits are found from the trees alone, so need no deepening.
+ */
+public class TreeWalkingDiffDetector extends BatchDiffDetector {
 
     private final Repository repo;
+    private final int threads;
+    private ChangedPathFilters changedPathFilters;
+    private ShallowHistory shallowHistory;
 
     public TreeWalkingDiffDetector(Repository repo) {
+        this(repo, 1);
+    }
+
+    /**
+     * @param threads The number of groups of modules with different tagged commits that may be checked at once
+     */
+    public TreeWalkingDiffDetector(Repository repo, int threads) {
         this.repo = repo;
+        this.threads = threads;
+    }
+
+    /**
+     * Deepens the history of a shallow clone when a walk reaches its boundary before the tags.
+     */
+    void deepenShallowHistoryWith(ShallowHistory shallowHistory) {
+        this.shallowHistory = shallowHistory;
     }
 
     public boolean hasChangedSince(String modulePath, java.util.List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+        return !changedModules(Collections.singletonList(new Module(modulePath, childModules, tags))).isEmpty();
+    }
+
+    public Set<String> changedModules(List<Module> modules) throws IOException {
+        Set<String> changed = new HashSet<String>();
+        if (modules.isEmpty()) {
+            return changed;
+        }
+        if (changedPathFilters == null) {
+            changedPathFilters = ChangedPathFilters.load(repo);
+        }
+        ModulePathTrie trie = new ModulePathTrie();
+        Map<Set<ObjectId>, BitSet> modulesByTaggedCommits = new LinkedHashMap<Set<ObjectId>, BitSet>();
+        ObjectId[] latestTaggedCommits = new ObjectId[modules.size()];
+        RevWalk walk = new RevWalk(repo);
+        try {
+            for (Module module : modules) {
+                int index = trie.add(module.path, module.childModules);
+                latestTaggedCommits[index] = taggedCommitOf(Reactor.tagWithHighestBuildNumber(module.tags), walk);
+                Set<ObjectId> taggedCommits = taggedCommitsOf(module.tags, walk);
+                BitSet modulesWithTheseTags = modulesByTaggedCommits.get(taggedCommits);
+                if (modulesWithTheseTags == null) {
+                    modulesWithTheseTags = new BitSet();
+                    modulesByTaggedCommits.put(taggedCommits, modulesWithTheseTags);
+                }
+                modulesWithTheseTags.set(index);
+            }
+        } finally {
+            walk.dispose();
+        }
+
+        ObjectId head = repo.getRef("HEAD").getObjectId();
+        for (BitSet changedInGroup : changedInEachGroup(modulesByTaggedCommits, latestTaggedCommits, head, modules, trie)) {
+            for (int i = changedInGroup.nextSetBit(0); i >= 0; i = changedInGroup.nextSetBit(i + 1)) {
+                changed.add(modules.get(i).path);
+            }
+        }
+        try {
+            changedPathFilters.save();
+        } catch (IOException e) {
+            // Filters that cannot be written are only built again next time
+        }
+        return changed;
+    }
+
+    /**
+     * Checks each group of modules, on a pool of threads if there is more than one group and more than one thread
+     * is allowed.
+     */
+    private List<BitSet> changedInEachGroup(Map<Set<ObjectId>, BitSet> modulesByTaggedCommits, final ObjectId[] latestTaggedCommits, final ObjectId head, final List<Module> modules, final ModulePathTrie trie) throws IOException {
+        final Map<ObjectId, BitSet> modulesChangedByCommit = new ConcurrentHashMap<ObjectId, BitSet>();
+        List<BitSet> results = new ArrayList<BitSet>();
+        if (threads <= 1 || modulesByTaggedCommits.size() == 1) {
+            for (Map.Entry<Set<ObjectId>, BitSet> group : modulesByTaggedCommits.entrySet()) {
+                results.add(changedInGroup(group.getValue(), group.getKey(), latestTaggedCommits, head, modules, trie, modulesChangedByCommit));
+            }
+            return results;
+        }
+
+        List<Callable<BitSet>> checks = new ArrayList<Callable<BitSet>>();
+        for (final Map.Entry<Set<ObjectId>, BitSet> group : modulesByTaggedCommits.entrySet()) {
+            checks.add(new Callable<BitSet>() {
+                @Override
+                public BitSet call() throws IOException {
+                    return changedInGroup(group.getValue(), group.getKey(), latestTaggedCommits, head, modules, trie, modulesChangedByCommit);
+                }
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(threads, checks.size()));
+        try {
+            for (Future<BitSet> result : pool.invokeAll(checks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while detecting changes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Error while detecting changes", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Finds which of a group of modules that have the same tagged commits have changed, using a walk of its own so
+     * that groups can be checked at the same time.
+     */
+    private BitSet changedInGroup(BitSet group, Set<ObjectId> taggedCommits, ObjectId[] latestTaggedCommits, ObjectId head, List<Module> modules, ModulePathTrie trie, Map<ObjectId, BitSet> modulesChangedByCommit) throws IOException {
+        BitSet changed;
+        do {
+            changed = changedInGroupUnlessShallow(group, taggedCommits, latestTaggedCommits, head, modules, trie, modulesChangedByCommit);
+        } while (changed == null);
+        return changed;
+    }
+
+    /**
+     * @return The changed modules, or null if the history of a shallow clone was deepened, so the walk needs to be
+     * started again
+     */
+    private BitSet changedInGroupUnlessShallow(BitSet group, Set<ObjectId> taggedCommits, ObjectId[] latestTaggedCommits, ObjectId head, List<Module> modules, ModulePathTrie trie, Map<ObjectId, BitSet> modulesChangedByCommit) throws IOException {
         RevWalk walk = new RevWalk(repo);
         try {
             walk.setRetainBody(false);
-            walk.markStart(walk.parseCommit(repo.getRef("HEAD").getObjectId()));
-            filterOutOtherModulesChanges(modulePath, childModules, walk);
-            stopWalkingWhenTheTagsAreHit(tags, walk);
-            return walk.iterator().hasNext();
+            BitSet unchanged = sameAsAtTheLatestTag(group, latestTaggedCommits, walk.parseCommit(head).getTree(), walk, trie);
+            BitSet toWalk = (BitSet) group.clone();
+            toWalk.andNot(unchanged);
+            if (!toWalk.isEmpty()) {
+                Set<ObjectId> shallowBoundary = ShallowHistory.boundaryOf(repo);
+                walk.markStart(walk.parseCommit(head));
+                for (ObjectId taggedCommit : taggedCommits) {
+                    walk.markUninteresting(walk.parseCommit(taggedCommit));
+                }
+                RevCommit commit;
+                while (!toWalk.isEmpty() && (commit = walk.next()) != null) {
+                    if (shallowBoundary.contains(commit) && shallowHistory != null && shallowHistory.deepenPast(commit)) {
+                        return null;
+                    }
+                    if (mightHaveChangedAny(commit, toWalk, modules)) {
+                        toWalk.andNot(modulesChangedBy(commit, walk, trie, modulesChangedByCommit, !shallowBoundary.contains(commit)));
+                    }
+                }
+                unchanged.or(toWalk);
+            }
+            BitSet changed = (BitSet) group.clone();
+            changed.andNot(unchanged);
+            return changed;
         } finally {
             walk.dispose();
         }
     }
 
-    private static void stopWalkingWhenTheTagsAreHit(Collection<AnnotatedTag> tags, RevWalk walk) throws IOException {
+    /**
+     * Uses the changed path filter of the commit to rule it out without reading its trees. The filters are of the
+     * changes since the first parent, which include any change a merge made, and cannot rule out changes to the
+     * root module as every change is below the root.
+     */
+    private boolean mightHaveChangedAny(RevCommit commit, BitSet modulesToCheck, List<Module> modules) {
+        for (int i = modulesToCheck.nextSetBit(0); i >= 0; i = modulesToCheck.nextSetBit(i + 1)) {
+            String path = modules.get(i).path;
+            if (".".equals(path) || changedPathFilters.mightHaveChanged(commit, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<ObjectId> taggedCommitsOf(Collection<AnnotatedTag> tags, RevWalk walk) throws IOException {
+        Set<ObjectId> commits = new HashSet<ObjectId>();
         for (AnnotatedTag tag : tags) {
-            ObjectId commitId = tag.ref().getTarget().getObjectId();
-            RevCommit revCommit = walk.parseCommit(commitId);
-            walk.markUninteresting(revCommit);
+            commits.add(taggedCommitOf(tag, walk));
         }
+        return commits;
     }
 
-    private void filterOutOtherModulesChanges(String modulePath, List<String> childModules, RevWalk walk) {
-        boolean isRootModule = ".".equals(modulePath);
-        boolean isMultiModuleProject = !isRootModule || !childModules.isEmpty();
-        List<TreeFilter> treeFilters = new ArrayList<TreeFilter>();
-        treeFilters.add(TreeFilter.ANY_DIFF);
-        if (isMultiModuleProject) {
-            if (!isRootModule) {
-                // for sub-modules, look for changes only in the sub-module path...
-                treeFilters.add(PathFilter.create(modulePath));
+    private static ObjectId taggedCommitOf(AnnotatedTag tag, RevWalk walk) throws IOException {
+        ObjectId commitId = tag.taggedCommitId();
+        if (commitId == null) {
+            commitId = tag.ref().getTarget().getObjectId();
+        }
+        return walk.parseCommit(commitId).copy();
+    }
+
+    /**
+     * Finds the modules whose files at HEAD are identical to those at the commit of their latest tag by comparing
+     * tree ids, which only needs the directories on the way to the modules to be read, so that their history need not
+     * be walked.
+     */
+    private static BitSet sameAsAtTheLatestTag(BitSet modules, ObjectId[] latestTaggedCommits, RevTree headTree, RevWalk walk, ModulePathTrie trie) throws IOException {
+        Map<ObjectId, BitSet> modulesByLatestTaggedCommit = new LinkedHashMap<ObjectId, BitSet>();
+        for (int i = modules.nextSetBit(0); i >= 0; i = modules.nextSetBit(i + 1)) {
+            BitSet modulesWithThisCommit = modulesByLatestTaggedCommit.get(latestTaggedCommits[i]);
+            if (modulesWithThisCommit == null) {
+                modulesWithThisCommit = new BitSet();
+                modulesByLatestTaggedCommit.put(latestTaggedCommits[i], modulesWithThisCommit);
             }
+            modulesWithThisCommit.set(i);
+        }
+        BitSet same = new BitSet();
+        for (Map.Entry<ObjectId, BitSet> latest : modulesByLatestTaggedCommit.entrySet()) {
+            BitSet sameAsThisTag = (BitSet) latest.getValue().clone();
+            sameAsThisTag.andNot(modulesChangedBetween(walk.getObjectReader(), trie, walk.parseCommit(latest.getKey()).getTree(), headTree, null));
+            same.or(sameAsThisTag);
+        }
+        return same;
+    }
+
+    /**
+     * @param remember False for a commit on the boundary of a shallow clone, whose parents may be fetched later, so
+     *                 neither what it changed nor its changed path filter is kept
+     */
+    private BitSet modulesChangedBy(RevCommit commit, RevWalk walk, ModulePathTrie trie, Map<ObjectId, BitSet> modulesChangedByCommit, boolean remember) throws IOException {
+        BitSet changed = modulesChangedByCommit.get(commit);
+        if (changed != null) {
+            return changed;
+        }
+        ObjectReader reader = walk.getObjectReader();
+        RevCommit[] parents = commit.getParents();
+        RevTree firstParentTree = null;
+        if (parents.length > 0) {
+            walk.parseHeaders(parents[0]);
+            firstParentTree = parents[0].getTree();
+        }
+        if (remember && !changedPathFilters.hasFilterFor(commit)) {
+            Set<String> changedPaths = new HashSet<String>();
+            changed = modulesChangedBetween(reader, trie, firstParentTree, commit.getTree(), changedPaths);
+            changedPathFilters.add(commit, changedPaths);
+        } else {
+            changed = modulesChangedBetween(reader, trie, firstParentTree, commit.getTree(), null);
+        }
+        for (int i = 1; i < parents.length; i++) {
+            walk.parseHeaders(parents[i]);
+            changed.and(modulesChangedBetween(reader, trie, parents[i].getTree(), commit.getTree(), null));
+        }
+        if (remember) {
+            modulesChangedByCommit.put(commit.copy(), changed);
+        }
+        return changed;
+    }
 
-            // ... but ignore any sub-modules of the current sub-module, because they can change independently of the current module
-            for (String childModule : childModules) {
-                String path = isRootModule ? childModule : modulePath + "/" + childModule;
-                treeFilters.add(PathFilter.create(path).negate());
+    /**
+     * Compares the two trees, only going into the directories that differ and that have modules below them, unless
+     * the changed files are wanted for a changed path filter, in which case every directory that differs is entered.
+     *
+     * @param changedPaths The set to add the changed files to, up to just over {@link ChangedPathFilters#MAX_CHANGED_PATHS}
+     *                     of them, or null if they are not wanted
+     */
+    private static BitSet modulesChangedBetween(ObjectReader reader, ModulePathTrie trie, RevTree before, RevTree after, Set<String> changedPaths) throws IOException {
+        BitSet changed = new BitSet();
+        TreeWalk treeWalk = new TreeWalk(reader);
+        try {
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            treeWalk.setRecursive(changedPaths != null);
+            if (before == null) {
+                treeWalk.addTree(new EmptyTreeIterator());
+            } else {
+                treeWalk.addTree(before);
             }
+            treeWalk.addTree(after);
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                if (changedPaths != null && changedPaths.size() <= ChangedPathFilters.MAX_CHANGED_PATHS) {
+                    changedPaths.add(path);
+                }
+                if (treeWalk.isSubtree() && trie.hasModulesBelow(path)) {
+                    if (isFileInEitherTree(treeWalk)) {
+                        changed.or(trie.ownersOf(path));
+                    }
+                    treeWalk.enterSubtree();
+                } else {
+                    changed.or(trie.ownersOf(path));
+                }
+            }
+        } finally {
+            treeWalk.close();
+        }
+        return changed;
+    }
 
+    private static boolean isFileInEitherTree(TreeWalk treeWalk) {
+        for (int i = 0; i < treeWalk.getTreeCount(); i++) {
+            int mode = treeWalk.getRawMode(i);
+            if (mode != 0 && FileMode.TREE.getBits() != (mode & FileMode.TYPE_MASK)) {
+                return true;
+            }
         }
-        TreeFilter treeFilter = treeFilters.size() == 1 ? treeFilters.get(0) : AndTreeFilter.create(treeFilters);
-        walk.setTreeFilter(treeFilter);
+        return false;
     }
 }
@@ -0,0 +1,112 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModule;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class CachingDiffDetectorTest {
+
+    private final TestProject project = TestProject.independentVersionsProject();
+    private final Repository repo = project.local.getRepository();
+
+    @Test
+    public void theAnswersForTheSameHeadAndTagsAreRemembered() throws Exception {
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.2", 3);
+        project.commitRandomFile("console-app");
+
+        CountingDetector first = new CountingDetector();
+        assertThat(new CachingDiffDetector(repo, first).changedModules(modules(tag)), contains("console-app"));
+        CountingDetector second = new CountingDetector();
+        assertThat(new CachingDiffDetector(repo, second).changedModules(modules(tag)), contains("console-app"));
+
+        assertThat(first.modulesChecked, is(2));
+        assertThat(second.modulesChecked, is(0));
+    }
+
+    @Test
+    public void changesAreDetectedAgainWhenHeadOrTheTagsMove() throws Exception {
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.2", 3);
+        new CachingDiffDetector(repo, new CountingDetector()).changedModules(modules(tag));
+
+        project.commitRandomFile("core-utils");
+        CountingDetector afterCommit = new CountingDetector();
+        new CachingDiffDetector(repo, afterCommit).changedModules(modules(tag));
+        assertThat(afterCommit.modulesChecked, is(2));
+
+        AnnotatedTag newTag = saveFileInModule(project, "console-app", "1.2", 4);
+        CountingDetector afterTag = new CountingDetector();
+        assertThat(new CachingDiffDetector(repo, afterTag).changedModules(modules(newTag)), is(empty()));
+        assertThat(afterTag.modulesChecked, is(2));
+    }
+
+    @Test
+    public void nothingIsRememberedInAShallowClone() throws Exception {
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.2", 3);
+        project.commitRandomFile("console-app");
+        RevWalk walk = new RevWalk(repo);
+        walk.markStart(walk.parseCommit(repo.resolve("HEAD")));
+        RevCommit firstCommit = null;
+        for (RevCommit commit : walk) {
+            firstCommit = commit;
+        }
+        walk.dispose();
+        FileUtils.writeStringToFile(new File(repo.getDirectory(), "shallow"), firstCommit.name() + "\n");
+
+        new CachingDiffDetector(repo, new CountingDetector()).changedModules(modules(tag));
+        CountingDetector second = new CountingDetector();
+        assertThat(new CachingDiffDetector(repo, second).changedModules(modules(tag)), contains("console-app"));
+        assertThat(second.modulesChecked, is(2));
+        assertThat(new File(repo.getDirectory(), CachingDiffDetector.FILE_NAME).exists(), is(false));
+    }
+
+    @Test
+    public void aCorruptCacheIsIgnored() throws Exception {
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.2", 3);
+        project.commitRandomFile("console-app");
+        FileUtils.writeStringToFile(new File(repo.getDirectory(), CachingDiffDetector.FILE_NAME), "not a cache");
+
+        CountingDetector detector = new CountingDetector();
+        assertThat(new CachingDiffDetector(repo, detector).changedModules(modules(tag)), contains("console-app"));
+        assertThat(detector.modulesChecked, is(2));
+    }
+
+    private static List<DiffDetector.Module> modules(AnnotatedTag tag) {
+        return asList(
+            new DiffDetector.Module("console-app", new ArrayList<String>(), asList(tag)),
+            new DiffDetector.Module("core-utils", new ArrayList<String>(), asList(tag)));
+    }
+
+    private class CountingDetector extends BatchDiffDetector {
+        private final BatchDiffDetector detector = new TreeWalkingDiffDetector(repo);
+        int modulesChecked;
+
+        @Override
+        public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+            modulesChecked++;
+            return detector.hasChangedSince(modulePath, childModules, tags);
+        }
+
+        @Override
+        public Set<String> changedModules(List<Module> modules) throws IOException {
+            modulesChecked += modules.size();
+            return detector.changedModules(modules);
+        }
+    }
+}
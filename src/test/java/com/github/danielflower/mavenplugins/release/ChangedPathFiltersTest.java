@@ -0,0 +1,100 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModule;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ChangedPathFiltersTest {
+
+    private final TestProject project = TestProject.nestedProject();
+    private final Repository repo = project.local.getRepository();
+
+    @Test
+    public void theFilterOfACommitContainsTheDirectoriesOfWhatItChanged() throws Exception {
+        ObjectId head = repo.resolve("HEAD");
+        ChangedPathFilters filters = ChangedPathFilters.load(repo);
+        filters.add(head, paths("server-modules/server-module-a/src/main/java/Thing.java"));
+
+        assertThat(filters.mightHaveChanged(head, "server-modules/server-module-a"), is(true));
+        assertThat(filters.mightHaveChanged(head, "server-modules"), is(true));
+        assertThat(filters.mightHaveChanged(head, "server-modules/server-module-b"), is(false));
+        assertThat(filters.mightHaveChanged(head, "core-utils"), is(false));
+    }
+
+    @Test
+    public void aCommitWithoutAFilterMightHaveChangedAnything() throws Exception {
+        ChangedPathFilters filters = ChangedPathFilters.load(repo);
+        assertThat(filters.hasFilterFor(repo.resolve("HEAD")), is(false));
+        assertThat(filters.mightHaveChanged(repo.resolve("HEAD"), "core-utils"), is(true));
+    }
+
+    @Test
+    public void aCommitThatChangedTooManyPathsMightHaveChangedAnything() throws Exception {
+        Set<String> changedPaths = new HashSet<String>();
+        for (int i = 0; i <= ChangedPathFilters.MAX_CHANGED_PATHS; i++) {
+            changedPaths.add("server-modules/server-module-a/file-" + i);
+        }
+        ObjectId head = repo.resolve("HEAD");
+        ChangedPathFilters filters = ChangedPathFilters.load(repo);
+        filters.add(head, changedPaths);
+
+        assertThat(filters.hasFilterFor(head), is(true));
+        assertThat(filters.mightHaveChanged(head, "core-utils"), is(true));
+    }
+
+    @Test
+    public void filtersAreSavedAndLoadedAgain() throws Exception {
+        ObjectId head = repo.resolve("HEAD");
+        ChangedPathFilters filtersToSave = ChangedPathFilters.load(repo);
+        filtersToSave.add(head, paths("core-utils/pom.xml"));
+        filtersToSave.save();
+
+        File file = new File(repo.getDirectory(), ChangedPathFilters.FILE_NAME);
+        long savedLength = file.length();
+        ChangedPathFilters loaded = ChangedPathFilters.load(repo);
+        assertThat(loaded.mightHaveChanged(head, "core-utils"), is(true));
+        assertThat(loaded.mightHaveChanged(head, "console-app"), is(false));
+        loaded.save();
+        assertThat(file.length(), is(savedLength));
+    }
+
+    @Test
+    public void theDetectorAddsTheFiltersOfTheCommitsItWalks() throws Exception {
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.0", 0);
+        project.commitRandomFile("server-modules/server-module-a");
+
+        Set<String> changed = new TreeWalkingDiffDetector(repo).changedModules(asList(
+            new DiffDetector.Module("core-utils", new ArrayList<String>(), asList(tag)),
+            new DiffDetector.Module("server-modules/server-module-a", new ArrayList<String>(), asList(tag))));
+        assertThat(changed, is(paths("server-modules/server-module-a")));
+
+        ObjectId head = repo.resolve("HEAD");
+        ChangedPathFilters loaded = ChangedPathFilters.load(repo);
+        assertThat(loaded.hasFilterFor(head), is(true));
+        assertThat(loaded.mightHaveChanged(head, "server-modules/server-module-a"), is(true));
+        assertThat(loaded.mightHaveChanged(head, "server-modules/server-module-b"), is(false));
+        assertThat(loaded.hasFilterFor(repo.resolve(tag.ref().getName() + "^{commit}")), is(false));
+    }
+
+    @Test
+    public void aCorruptFileIsIgnored() throws Exception {
+        FileUtils.writeStringToFile(new File(repo.getDirectory(), ChangedPathFilters.FILE_NAME), "not a filter");
+        assertThat(ChangedPathFilters.load(repo).mightHaveChanged(repo.resolve("HEAD"), "core-utils"), is(true));
+    }
+
+    private static Set<String> paths(String... paths) {
+        return new HashSet<String>(asList(paths));
+    }
+}
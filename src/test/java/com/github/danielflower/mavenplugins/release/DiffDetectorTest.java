@@ -6,10 +6,13 @@ import scaffolding.TestProject;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
 
 import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModule;
 import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 
 public class DiffDetectorTest {
@@ -67,6 +70,70 @@ public class DiffDetectorTest {
         assertThat(detector.hasChangedSince("console-app", asList("console-app"), asList(tag3)), is(false));
     }
 
+    @Test
+    public void changesThatWereRevertedAreNotChanges() throws IOException, GitAPIException {
+        TestProject project = TestProject.independentVersionsProject();
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.2", 3);
+        project.commitRandomFile("console-app");
+        project.local.revert().include(project.local.getRepository().resolve("HEAD")).call();
+
+        DiffDetector detector = new TreeWalkingDiffDetector(project.local.getRepository());
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(tag)), is(false));
+    }
+
+    @Test
+    public void aModuleRevertedToAnOlderReleaseThanItsLatestHasChanged() throws IOException, GitAPIException {
+        TestProject project = TestProject.independentVersionsProject();
+        AnnotatedTag olderTag = saveFileInModule(project, "console-app", "1.2", 1);
+        AnnotatedTag latestTag = saveFileInModule(project, "console-app", "1.2", 2);
+        project.local.revert().include(project.local.getRepository().resolve("HEAD")).call();
+
+        DiffDetector detector = new TreeWalkingDiffDetector(project.local.getRepository());
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(olderTag, latestTag)), is(true));
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(latestTag, olderTag)), is(true));
+    }
+
+    @Test
+    public void canCheckManyModulesWithDifferentTagsTogether() throws IOException, GitAPIException {
+        TestProject project = TestProject.nestedProject();
+
+        AnnotatedTag coreTag = saveFileInModule(project, "core-utils", "1", 0);
+        AnnotatedTag serverTag = saveFileInModule(project, "server-modules/server-module-a", "1", 0);
+        project.commitRandomFile("server-modules/server-module-b");
+
+        for (int threads : asList(1, 4)) {
+            BatchDiffDetector detector = new TreeWalkingDiffDetector(project.local.getRepository(), threads);
+            Set<String> changed = detector.changedModules(asList(
+                new DiffDetector.Module("core-utils", noChildModules(), asList(coreTag)),
+                new DiffDetector.Module("console-app", noChildModules(), asList(coreTag)),
+                new DiffDetector.Module("server-modules/server-module-a", noChildModules(), asList(serverTag)),
+                new DiffDetector.Module("server-modules/server-module-b", noChildModules(), asList(serverTag)),
+                new DiffDetector.Module(".", asList("core-utils", "console-app", "parent-module", "server-modules"), asList(coreTag))
+            ));
+
+            assertThat(changed, containsInAnyOrder("server-modules/server-module-b"));
+        }
+    }
+
+    @Test
+    public void aDetectorThatChecksOneModuleAtATimeCanStillCheckManyModules() throws IOException, GitAPIException {
+        TestProject project = TestProject.independentVersionsProject();
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.2", 3);
+        project.commitRandomFile("console-app");
+
+        final DiffDetector treeWalker = new TreeWalkingDiffDetector(project.local.getRepository());
+        DiffDetector oneAtATime = new DiffDetector() {
+            public boolean hasChangedSince(String modulePath, java.util.List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+                return treeWalker.hasChangedSince(modulePath, childModules, tags);
+            }
+        };
+
+        Set<String> changed = BatchDiffDetector.of(oneAtATime).changedModules(asList(
+            new DiffDetector.Module("console-app", noChildModules(), asList(tag)),
+            new DiffDetector.Module("core-utils", noChildModules(), asList(tag))
+        ));
+        assertThat(changed, containsInAnyOrder("console-app"));
+    }
 
     private static java.util.List<String> noChildModules() {
         return new ArrayList<String>();
@@ -0,0 +1,76 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModule;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assume.assumeTrue;
+
+public class GitCliDiffDetectorTest {
+
+    @Test
+    public void givesTheSameAnswersAsTheJGitDetector() throws Exception {
+        assumeTrue(GitCliDiffDetector.isAvailable("git"));
+        TestProject project = TestProject.nestedProject();
+        AnnotatedTag coreTag = saveFileInModule(project, "core-utils", "1", 0);
+        AnnotatedTag serverTag = saveFileInModule(project, "server-modules/server-module-a", "1", 0);
+        project.commitRandomFile("server-modules/server-module-b");
+        project.commitRandomFile("server-modules");
+        project.commitRandomFile(".");
+
+        List<DiffDetector.Module> modules = asList(
+            new DiffDetector.Module("core-utils", noChildModules(), asList(coreTag)),
+            new DiffDetector.Module("console-app", noChildModules(), asList(coreTag)),
+            new DiffDetector.Module("server-modules", asList("server-module-a", "server-module-b"), asList(coreTag)),
+            new DiffDetector.Module("server-modules/server-module-a", noChildModules(), asList(serverTag)),
+            new DiffDetector.Module("server-modules/server-module-b", noChildModules(), asList(serverTag)),
+            new DiffDetector.Module(".", asList("core-utils", "console-app", "parent-module", "server-modules"), asList(serverTag))
+        );
+
+        BatchDiffDetector gitCli = new GitCliDiffDetector(project.localDir, "git");
+        BatchDiffDetector jgit = new TreeWalkingDiffDetector(project.local.getRepository());
+        assertThat(gitCli.changedModules(modules), equalTo(jgit.changedModules(modules)));
+    }
+
+    @Test
+    public void changesAfterTheTagAreDetected() throws Exception {
+        assumeTrue(GitCliDiffDetector.isAvailable("git"));
+        TestProject project = TestProject.independentVersionsProject();
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.2", 3);
+        DiffDetector detector = new GitCliDiffDetector(project.localDir, "git");
+
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(tag)), is(false));
+        project.commitRandomFile("console-app");
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(tag)), is(true));
+        assertThat(detector.hasChangedSince("core-utils", noChildModules(), asList(tag)), is(false));
+    }
+
+    @Test
+    public void aModuleRevertedToAnOlderReleaseThanItsLatestHasChanged() throws Exception {
+        assumeTrue(GitCliDiffDetector.isAvailable("git"));
+        TestProject project = TestProject.independentVersionsProject();
+        AnnotatedTag olderTag = saveFileInModule(project, "console-app", "1.2", 1);
+        AnnotatedTag latestTag = saveFileInModule(project, "console-app", "1.2", 2);
+        project.local.revert().include(project.local.getRepository().resolve("HEAD")).call();
+
+        DiffDetector detector = new GitCliDiffDetector(project.localDir, "git");
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(olderTag, latestTag)), is(true));
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(latestTag, olderTag)), is(true));
+    }
+
+    @Test
+    public void aMissingExecutableIsNotAvailable() {
+        assertThat(GitCliDiffDetector.isAvailable("no-such-git-executable"), is(false));
+    }
+
+    private static List<String> noChildModules() {
+        return new ArrayList<String>();
+    }
+}
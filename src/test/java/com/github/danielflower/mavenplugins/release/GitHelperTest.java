@@ -0,0 +1,28 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class GitHelperTest {
+
+    private final TestProject project = TestProject.singleModuleProject();
+
+    @Test
+    public void looksUpExactTagNames() throws Exception {
+        tag(project.local, "app-1.2.0");
+        assertThat(GitHelper.hasLocalTag(project.local, "app-1.2.0"), is(true));
+        assertThat(GitHelper.hasLocalTag(project.local, "app-1.2"), is(false));
+        assertThat(GitHelper.hasLocalTag(project.local, "app-1.2.0.1"), is(false));
+    }
+
+    private static void tag(Git repo, String... names) throws GitAPIException {
+        for (String name : names) {
+            repo.tag().setAnnotated(true).setName(name).setMessage("Some message").call();
+        }
+    }
+}
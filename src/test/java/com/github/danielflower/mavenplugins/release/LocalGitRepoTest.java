@@ -2,17 +2,30 @@ package com.github.danielflower.mavenplugins.release;
 
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.BundleWriter;
+import org.junit.Assert;
 import org.junit.Test;
 import scaffolding.TestProject;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeTrue;
 import static scaffolding.TestProject.dirToGitScmReference;
 import static com.github.danielflower.mavenplugins.release.GitHelper.scmUrlToRemote;
 
@@ -49,6 +62,60 @@ public class LocalGitRepoTest {
         assertThat(repo.remoteTagsFrom(tags("blah", "some-tag")), equalTo(asList("some-tag")));
     }
 
+    @Test
+    public void listsTheTagsOfARemoteThatIsNotARepositoryInTheFileSystemOverTheTransport() throws Exception {
+        tag(project.origin, "some-tag");
+        File bundle = new File(project.localDir.getAbsoluteFile().getParentFile(), project.localDir.getName() + "-origin.bundle");
+        BundleWriter writer = new BundleWriter(project.origin.getRepository());
+        writer.include(project.origin.getRepository().getRef("refs/tags/some-tag"));
+        OutputStream out = new FileOutputStream(bundle);
+        try {
+            writer.writeBundle(NullProgressMonitor.INSTANCE, out);
+        } finally {
+            out.close();
+        }
+        assertThat(LocalFileRemote.open(bundle.getPath()), is(nullValue()));
+
+        LocalGitRepo repo = new LocalGitRepo(project.local, bundle.getPath());
+        assertThat(repo.remoteTagsFrom(tags("blah", "some-tag")), equalTo(asList("some-tag")));
+    }
+
+    @Test
+    public void canListTheRemoteTagsInTheBackground() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        tag(project.origin, "some-tag");
+
+        repo.fetchRemoteTagsInBackground();
+
+        assertThat(repo.remoteTagsFrom(tags("blah", "some-tag")), equalTo(asList("some-tag")));
+    }
+
+    @Test
+    public void errorsFromListingTheRemoteTagsInTheBackgroundAreThrownWhenTheTagsAreNeeded() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, "file:///this/is/not/a/repo");
+
+        repo.fetchRemoteTagsInBackground();
+
+        try {
+            repo.allRemoteTags();
+            Assert.fail("Should have failed");
+        } catch (GitAPIException e) {
+            assertThat(e.getMessage(), containsString("/this/is/not/a/repo"));
+        }
+    }
+
+    @Test
+    public void remoteTagsCanBeLimitedToTheVersionsOfTheReactor() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        repo.limitRemoteTagsTo(asList("module-a-1.0"));
+        tag(project.origin, "module-a-1.0.1");
+        tag(project.origin, "module-a-1.1.1");
+        tag(project.origin, "module-b-1.0.1");
+
+        assertThat(repo.allRemoteTags().size(), is(1));
+        assertThat(repo.remoteTagIndex().buildNumbersForVersion("module-a", "1.0"), equalTo(asList(1L)));
+    }
+
     @Test
     public void canHaveManyTags() throws GitAPIException {
         int numberOfTags = 50; // setting this to 1000 works but takes too long
@@ -64,6 +131,112 @@ public class LocalGitRepoTest {
         }
     }
 
+    @Test
+    public void createsAllTheTagsTogether() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        List<AnnotatedTag> tags = tags("module-a-1.0.1", "module-b-2.0.1");
+
+        List<Ref> refs = repo.tagRepo(tags);
+
+        assertThat(refs.size(), is(2));
+        assertThat(repo.hasLocalTag("module-a-1.0.1"), is(true));
+        AnnotatedTag saved = AnnotatedTag.fromRef(project.local.getRepository(), project.local.getRepository().getRef("module-b-2.0.1"));
+        assertThat(saved.version(), equalTo("1"));
+        assertThat(saved.taggedCommitId(), equalTo((ObjectId) project.local.getRepository().resolve("HEAD")));
+    }
+
+    @Test
+    public void noTagsAreCreatedIfAnyOfThemCannotBe() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        tag(project.local, "module-b-2.0.1");
+
+        try {
+            repo.tagRepo(tags("module-a-1.0.1", "module-b-2.0.1", "module-c-3.0.1"));
+            Assert.fail("Should have failed");
+        } catch (ValidationException e) {
+            assertThat(e.getMessages(), hasItem(containsString("module-b-2.0.1")));
+        }
+        assertThat(GitHelper.hasLocalTag(project.local, "module-a-1.0.1"), is(false));
+        assertThat(GitHelper.hasLocalTag(project.local, "module-c-3.0.1"), is(false));
+    }
+
+    @Test
+    public void pushesAllTheTagsTogether() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+
+        repo.pushTags(repo.tagRepo(tags("module-a-1.0.1", "module-b-2.0.1")));
+
+        assertThat(GitHelper.hasLocalTag(project.origin, "module-a-1.0.1"), is(true));
+        assertThat(GitHelper.hasLocalTag(project.origin, "module-b-2.0.1"), is(true));
+    }
+
+    @Test
+    public void theTagsArePushedWithoutAtomicityToARemoteThatDoesNotSupportIt() throws Exception {
+        assumeTrue(GitCliDiffDetector.isAvailable("git"));
+        StoredConfig config = project.local.getRepository().getConfig();
+        config.setString("remote", "origin", "receivepack", "git -c receive.advertiseAtomic=false receive-pack");
+        config.save();
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+
+        repo.pushTags(repo.tagRepo(tags("module-a-1.0.1", "module-b-2.0.1")));
+
+        assertThat(GitHelper.hasLocalTag(project.origin, "module-a-1.0.1"), is(true));
+        assertThat(GitHelper.hasLocalTag(project.origin, "module-b-2.0.1"), is(true));
+    }
+
+    @Test
+    public void pushingToARemoteInTheFileSystemCopiesTheCommitsItDoesNotHave() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        ObjectId unpushedCommit = project.local.commit().setMessage("Not yet pushed").call().getId();
+
+        repo.pushTags(repo.tagRepo(tags("module-a-1.0.1")));
+
+        assertThat(GitHelper.hasLocalTag(project.origin, "module-a-1.0.1"), is(true));
+        assertThat(project.origin.getRepository().hasObject(unpushedCommit), is(true));
+        assertThat(project.origin.getRepository().getRefDatabase().exactRef("refs/tags/module-a-1.0.1").getObjectId(),
+            equalTo(project.local.getRepository().getRefDatabase().exactRef("refs/tags/module-a-1.0.1").getObjectId()));
+    }
+
+    @Test
+    public void canPushTheTagsInTheBackground() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        List<Ref> refs = repo.tagRepo(tags("module-a-1.0.1", "module-b-2.0.1"));
+
+        Future<List<String>> pushed = repo.pushTagsInBackground(refs);
+
+        assertThat(LocalGitRepo.await(pushed, "pushing"), equalTo(asList("module-a-1.0.1", "module-b-2.0.1")));
+        assertThat(GitHelper.hasLocalTag(project.origin, "module-b-2.0.1"), is(true));
+    }
+
+    @Test
+    public void pushErrorsFromTheBackgroundAreThrownWhenWaitedFor() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        tag(project.origin, "module-b-2.0.1");
+        List<Ref> refs = repo.tagRepo(tags("module-b-2.0.1"));
+
+        Future<List<String>> pushed = repo.pushTagsInBackground(refs);
+
+        try {
+            LocalGitRepo.await(pushed, "pushing");
+            Assert.fail("Should have failed");
+        } catch (ValidationException e) {
+            assertThat(e.getMessages(), hasItem(containsString("module-b-2.0.1: REJECTED")));
+        }
+    }
+
+    @Test
+    public void reportsEachTagIfTheRemoteRejectsThePush() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        tag(project.origin, "module-b-2.0.1");
+
+        try {
+            repo.pushTags(repo.tagRepo(tags("module-a-1.0.1", "module-b-2.0.1")));
+            Assert.fail("Should have failed");
+        } catch (ValidationException e) {
+            assertThat(e.getMessages(), hasItem(containsString("module-b-2.0.1: REJECTED")));
+        }
+    }
+
     private static List<AnnotatedTag> tags(String... tagNames) {
         List<AnnotatedTag> tags = new ArrayList<AnnotatedTag>();
         for (String tagName : tagNames) {
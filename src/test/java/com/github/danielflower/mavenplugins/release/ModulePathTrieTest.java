@@ -0,0 +1,58 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ModulePathTrieTest {
+
+    private final ModulePathTrie trie = new ModulePathTrie();
+    private final int root = trie.add(".", asList("core-utils", "server-modules"));
+    private final int coreUtils = trie.add("core-utils", noChildModules());
+    private final int serverModules = trie.add("server-modules", asList("server-module-a"));
+    private final int serverModuleA = trie.add("server-modules/server-module-a", noChildModules());
+
+    @Test
+    public void pathsBelongToTheModulesWhoseDirectoriesTheyAreIn() {
+        assertThat(trie.ownersOf("pom.xml"), equalTo(modules(root)));
+        assertThat(trie.ownersOf("docs/readme.md"), equalTo(modules(root)));
+        assertThat(trie.ownersOf("core-utils/src/Main.java"), equalTo(modules(coreUtils)));
+        assertThat(trie.ownersOf("server-modules/server-module-a/pom.xml"), equalTo(modules(serverModuleA)));
+        assertThat(trie.ownersOf("core-utils-2/pom.xml"), equalTo(modules(root)));
+    }
+
+    @Test
+    public void theDirectoriesOnTheWayToAChildModuleAreSkippedByItsParent() {
+        assertThat(trie.ownersOf("server-modules/pom.xml").get(serverModules), is(false));
+        assertThat(trie.ownersOf("server-modules/pom.xml"), equalTo(modules()));
+        assertThat(trie.ownersOf("server-modules/server-module-b/pom.xml"), equalTo(modules()));
+    }
+
+    @Test
+    public void onlyDirectoriesWithModulesBelowThemNeedToBeEntered() {
+        assertThat(trie.hasModulesBelow(""), is(true));
+        assertThat(trie.hasModulesBelow("server-modules"), is(true));
+        assertThat(trie.hasModulesBelow("server-modules/server-module-a"), is(false));
+        assertThat(trie.hasModulesBelow("core-utils"), is(false));
+        assertThat(trie.hasModulesBelow("docs"), is(false));
+    }
+
+    private static BitSet modules(int... indexes) {
+        BitSet modules = new BitSet();
+        for (int index : indexes) {
+            modules.set(index);
+        }
+        return modules;
+    }
+
+    private static List<String> noChildModules() {
+        return new ArrayList<String>();
+    }
+}
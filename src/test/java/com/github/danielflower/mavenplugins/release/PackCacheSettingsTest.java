@@ -0,0 +1,59 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+public class PackCacheSettingsTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void sizesAreWorkedOutFromTheHeapWhenNotGiven() throws ValidationException {
+        PackCacheSettings settings = PackCacheSettings.sizedFor(1024 * MB, 0, 0, 0, false);
+        assertThat(settings.limit, equalTo(256 * MB));
+        assertThat(settings.windowSize, equalTo(64 * 1024));
+        assertThat((long) settings.deltaBaseCacheLimit, equalTo(64 * MB));
+        assertThat(settings.mmap, is(false));
+    }
+
+    @Test
+    public void jgitDefaultsAreUsedForSmallHeaps() throws ValidationException {
+        PackCacheSettings settings = PackCacheSettings.sizedFor(16 * MB, 0, 0, 0, false);
+        assertThat(settings.limit, equalTo(10 * MB));
+        assertThat(settings.windowSize, equalTo(8 * 1024));
+        assertThat((long) settings.deltaBaseCacheLimit, equalTo(10 * MB));
+    }
+
+    @Test
+    public void givenSizesAreUsed() throws ValidationException {
+        PackCacheSettings settings = PackCacheSettings.sizedFor(1024 * MB, 128, 32, 8, true);
+        assertThat(settings.limit, equalTo(32 * MB));
+        assertThat(settings.windowSize, equalTo(128 * 1024));
+        assertThat((long) settings.deltaBaseCacheLimit, equalTo(8 * MB));
+        assertThat(settings.mmap, is(true));
+    }
+
+    @Test
+    public void theUsageOfTheInstalledCacheCanBeRead() throws ValidationException {
+        PackCacheSettings.sizedFor(Runtime.getRuntime().maxMemory(), 0, 0, 0, false).install();
+        assertThat(PackCacheSettings.usage(), notNullValue());
+    }
+
+    @Test
+    public void windowSizesThatJGitCannotUseAreRejected() {
+        for (int windowSizeKb : new int[] { 100, 2, 64 * 1024 }) {
+            try {
+                PackCacheSettings.sizedFor(1024 * MB, windowSizeKb, 32, 0, false);
+                Assert.fail("Should have failed for " + windowSizeKb);
+            } catch (ValidationException e) {
+                assertThat(e.getMessage(), containsString("packedGitWindowSizeKb: " + windowSizeKb));
+            }
+        }
+    }
+}
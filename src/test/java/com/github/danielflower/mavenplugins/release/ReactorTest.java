@@ -1,13 +1,10 @@
 package com.github.danielflower.mavenplugins.release;
 
-import org.apache.maven.plugin.MojoExecutionException;
-import org.apache.maven.project.MavenProject;
 import org.junit.Assert;
 import org.junit.Test;
 
-import java.io.IOException;
-import java.util.Collection;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.*;
@@ -48,17 +45,20 @@ public class ReactorTest {
     }
 
     @Test
-    public void returnsTheLatestTagIfThereAreChanges() throws MojoExecutionException {
+    public void returnsTheLatestTagIfThereAreNoChanges() {
         AnnotatedTag onePointNine = AnnotatedTag.create("whatever-1.1.9", "1.1", 9);
         AnnotatedTag onePointTen = AnnotatedTag.create("whatever-1.1.10", "1.1", 10);
-        assertThat(Reactor.hasChangedSinceLastRelease(asList(onePointNine, onePointTen), new NeverChanged(), new MavenProject(), "whatever"), is(onePointTen));
-        assertThat(Reactor.hasChangedSinceLastRelease(asList(onePointTen, onePointNine), new NeverChanged(), new MavenProject(), "whatever"), is(onePointTen));
+        assertThat(Reactor.hasChangedSinceLastRelease(asList(onePointNine, onePointTen), noChanges(), "whatever"), is(onePointTen));
+        assertThat(Reactor.hasChangedSinceLastRelease(asList(onePointTen, onePointNine), noChanges(), "whatever"), is(onePointTen));
     }
 
-    private static class NeverChanged implements DiffDetector {
-        @Override
-        public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
-            return false;
-        }
+    @Test
+    public void returnsNoTagIfThereAreChanges() {
+        AnnotatedTag onePointTen = AnnotatedTag.create("whatever-1.1.10", "1.1", 10);
+        assertThat(Reactor.hasChangedSinceLastRelease(asList(onePointTen), new HashSet<String>(asList("whatever")), "whatever"), is(nullValue()));
+    }
+
+    private static Set<String> noChanges() {
+        return new HashSet<String>();
     }
 }
@@ -0,0 +1,142 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.util.List;
+
+import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModule;
+import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.tagLocalRepo;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ReleaseTagIndexTest {
+
+    @Test
+    public void groupsTagsByArtifactAndVersion() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+        AnnotatedTag tag1 = saveFileInModule(project, "console-app", "1.2", 3);
+        AnnotatedTag tag2 = saveFileInModule(project, "core-utils", "2", 0);
+        AnnotatedTag tag3 = saveFileInModule(project, "console-app", "1.2", 4);
+        saveFileInModule(project, "console-app", "1.20", 1);
+
+        ReleaseTagIndex index = ReleaseTagIndex.fromRepository(project.local);
+
+        assertThat(index.tagsForVersion("console-app", "1.2"), containsInAnyOrder(tag1, tag3));
+        assertThat(index.tagsForVersion("core-utils", "2"), contains(tag2));
+        assertThat(index.tagsForVersion("console-app", "1.3"), hasSize(0));
+        assertThat(index.buildNumbersForVersion("console-app", "1.2"), containsInAnyOrder(3L, 4L));
+        assertThat(index.hasTag("console-app-1.2.3"), is(true));
+        assertThat(index.hasTag("console-app-1.2"), is(false));
+    }
+
+    @Test
+    public void findsTheLatestCommitWhereThereHaveBeenNoBranches() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+
+        AnnotatedTag tag1 = saveFileInModule(project, "console-app", "1.2", 3);
+        AnnotatedTag tag2 = saveFileInModule(project, "core-utils", "2", 0);
+        AnnotatedTag tag3 = saveFileInModule(project, "console-app", "1.2", 4);
+
+        ReleaseTagIndex index = ReleaseTagIndex.fromRepository(project.local);
+        assertThat(index.tagsForVersion("console-app", "1.3"), hasSize(0));
+        assertThat(index.tagsForVersion("console-app", "1.2"), containsInAnyOrder(tag1, tag3));
+        assertThat(index.tagsForVersion("core-utils", "2"), contains(tag2));
+    }
+
+    @Test
+    public void findsTagsWhetherTheyArePackedOrLoose() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        for (String name : asList("app-1.1.0", "app-1.2.0", "app-1.2.1", "app-1.20.0", "app-utils-1.2.0", "zebra-1.0.0")) {
+            project.local.tag().setAnnotated(true).setName(name).setMessage("Some message").call();
+        }
+        project.local.gc().call(); // packs the refs, so packed and loose refs are both read
+        project.local.tag().setAnnotated(true).setName("app-1.2.2").setMessage("Some message").call();
+
+        ReleaseTagIndex index = ReleaseTagIndex.fromRepository(project.local);
+        assertThat(index.buildNumbersForVersion("app", "1.2"), contains(2L, 1L, 0L));
+        assertThat(index.hasTag("app-1.20.0"), is(true));
+        assertThat(index.hasTag("app-1.2"), is(false));
+    }
+
+    @Test
+    public void returnsMultipleTagsOnASingleCommit() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+        saveFileInModule(project, "console-app", "1.2", 1);
+        AnnotatedTag tag1 = tagLocalRepo(project, "console-app-1.1.1.1", "1.1.1", 1);
+        AnnotatedTag tag3 = tagLocalRepo(project, "console-app-1.1.1.3", "1.1.1", 3);
+        AnnotatedTag tag2 = tagLocalRepo(project, "console-app-1.1.1.2", "1.1.1", 2);
+        List<AnnotatedTag> annotatedTags = ReleaseTagIndex.fromRepository(project.local).tagsForVersion("console-app", "1.1.1");
+        assertThat(annotatedTags, containsInAnyOrder(tag1, tag2, tag3));
+    }
+
+    @Test
+    public void tagObjectsAreOnlyReadWhenTheVersionOrTaggedCommitIsNeeded() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        project.local.tag().setName("single-module-1.0.7").setAnnotated(true).setMessage("{\"version\":\"1.0\",\"buildNumber\":\"7\"}").call();
+
+        AnnotatedTag tag = ReleaseTagIndex.fromRepository(project.local).tagsForVersion("single-module", "1.0").get(0);
+        assertThat(tag.buildNumber(), is(7L));
+        assertThat(tag.isLoaded(), is(false));
+
+        assertThat(tag.version(), is("1.0"));
+        assertThat(tag.isLoaded(), is(true));
+        assertThat(tag.taggedCommitId(), equalTo((ObjectId) project.local.getRepository().resolve("HEAD")));
+    }
+
+    @Test
+    public void lightweightTagsPointStraightAtTheirCommit() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        project.local.tag().setName("single-module-1.0.2").setAnnotated(false).call();
+
+        AnnotatedTag tag = ReleaseTagIndex.fromRepository(project.local).tagsForVersion("single-module", "1.0").get(0);
+        assertThat(tag.buildNumber(), is(2L));
+        assertThat(tag.version(), is("0"));
+        assertThat(tag.taggedCommitId(), equalTo((ObjectId) project.local.getRepository().resolve("HEAD")));
+    }
+
+    @Test
+    public void theTaggedCommitsOfManyTagsCanBeReadTogether() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+        saveFileInModule(project, "console-app", "1.2", 3);
+        ObjectId firstCommit = project.local.getRepository().resolve("HEAD");
+        saveFileInModule(project, "console-app", "1.2", 4);
+        project.local.tag().setName("console-app-1.2.5").setAnnotated(false).call();
+        ObjectId secondCommit = project.local.getRepository().resolve("HEAD");
+
+        ReleaseTagIndex index = ReleaseTagIndex.fromRepository(project.local);
+        List<AnnotatedTag> tags = index.tagsForVersion("console-app", "1.2");
+        index.loadTaggedCommits(tags);
+
+        for (AnnotatedTag tag : tags) {
+            assertThat(tag.isLoaded(), is(true));
+            ObjectId expectedCommit = tag.buildNumber() == 3 ? firstCommit : secondCommit;
+            assertThat(tag.name(), tag.taggedCommitId(), equalTo(expectedCommit));
+        }
+        assertThat(tags, hasSize(3));
+    }
+
+    @Test
+    public void tagsCanBeAddedAfterTheIndexIsBuilt() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        ReleaseTagIndex index = ReleaseTagIndex.fromRepository(project.local);
+        AnnotatedTag tag = AnnotatedTag.create("single-module-1.0.5", "1.0", 5);
+
+        index.add(tag.saveAtHEAD(project.local));
+
+        assertThat(index.hasTag("single-module-1.0.5"), is(true));
+        assertThat(index.buildNumbersForVersion("single-module", "1.0"), contains(5L));
+    }
+
+    @Test
+    public void theVersionKeyIsTheTagNameWithoutTheBuildNumber() {
+        assertThat(ReleaseTagIndex.versionKeyOf("my-artifact-1.2.3"), is("my-artifact-1.2"));
+        assertThat(ReleaseTagIndex.versionKeyOf("my-artifact-1.2-beta"), is(nullValue()));
+        assertThat(ReleaseTagIndex.versionKeyOf("some-tag"), is(nullValue()));
+    }
+}
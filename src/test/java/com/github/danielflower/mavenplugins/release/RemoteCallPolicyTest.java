@@ -0,0 +1,80 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.InvalidRemoteException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class RemoteCallPolicyTest {
+
+    private final RemoteCallPolicy policy = new RemoteCallPolicy(new SystemStreamLog(), 0, 2, 1, new Random());
+
+    @Test
+    public void networkErrorsAreRetried() throws Exception {
+        FailingCall call = new FailingCall(2, new TransportException("Connection reset"));
+        assertThat(policy.run("Testing", call), is("done"));
+        assertThat(call.attempts, is(3));
+    }
+
+    @Test
+    public void theLastNetworkErrorIsThrownWhenThereAreNoRetriesLeft() throws Exception {
+        FailingCall call = new FailingCall(3, new TransportException("Connection reset"));
+        try {
+            policy.run("Testing", call);
+            Assert.fail("Should have failed");
+        } catch (TransportException e) {
+            assertThat(call.attempts, is(3));
+        }
+    }
+
+    @Test
+    public void otherErrorsAreNotRetried() throws Exception {
+        FailingCall call = new FailingCall(1, new InvalidRemoteException("No such remote"));
+        try {
+            policy.run("Testing", call);
+            Assert.fail("Should have failed");
+        } catch (InvalidRemoteException e) {
+            assertThat(call.attempts, is(1));
+        }
+    }
+
+    @Test
+    public void theDelayBeforeEachRetryDoublesWithJitter() {
+        RemoteCallPolicy policy = new RemoteCallPolicy(new SystemStreamLog(), 0, 5, 1000, new Random());
+        for (int i = 0; i < 20; i++) {
+            assertThat(policy.backoffBeforeAttempt(2), allOf(greaterThanOrEqualTo(500L), lessThanOrEqualTo(1000L)));
+            assertThat(policy.backoffBeforeAttempt(3), allOf(greaterThanOrEqualTo(1000L), lessThanOrEqualTo(2000L)));
+            assertThat(policy.backoffBeforeAttempt(4), allOf(greaterThanOrEqualTo(2000L), lessThanOrEqualTo(4000L)));
+        }
+    }
+
+    private static class FailingCall implements RemoteCallPolicy.Call<String> {
+        private final int failures;
+        private final GitAPIException error;
+        int attempts;
+
+        FailingCall(int failures, GitAPIException error) {
+            this.failures = failures;
+            this.error = error;
+        }
+
+        @Override
+        public String call() throws GitAPIException {
+            attempts++;
+            if (attempts <= failures) {
+                throw error;
+            }
+            return "done";
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RemoteTagCacheTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    private final TestProject project = TestProject.singleModuleProject();
+
+    @Test
+    public void cachedRemoteTagsAreUsedUntilTheyAreTooOld() throws Exception {
+        tagOrigin("single-module-1.0.1");
+        cachingRepo(ONE_HOUR, false).allRemoteTags();
+        tagOrigin("single-module-1.0.2");
+
+        assertThat(cachingRepo(ONE_HOUR, false).remoteTagsFrom(tags("single-module-1.0.1", "single-module-1.0.2")), equalTo(asList("single-module-1.0.1")));
+        assertThat(cachingRepo(-1, false).remoteTagsFrom(tags("single-module-1.0.1", "single-module-1.0.2")), equalTo(asList("single-module-1.0.1", "single-module-1.0.2")));
+    }
+
+    @Test
+    public void refreshingAlwaysListsTheRemoteAndUpdatesTheCache() throws Exception {
+        cachingRepo(ONE_HOUR, false).allRemoteTags();
+        tagOrigin("single-module-1.0.1");
+
+        assertThat(cachingRepo(ONE_HOUR, true).remoteTagsFrom(tags("single-module-1.0.1")), equalTo(asList("single-module-1.0.1")));
+        assertThat(cachingRepo(ONE_HOUR, false).remoteTagsFrom(tags("single-module-1.0.1")), equalTo(asList("single-module-1.0.1")));
+    }
+
+    @Test
+    public void versionsThatWereNotCachedAreListedFromTheRemote() throws Exception {
+        cachingRepo(ONE_HOUR, false).allRemoteTags();
+        tagOrigin("other-module-2.0.0");
+
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        repo.cacheRemoteTags(asList("single-module-1.0", "other-module-2.0"), ONE_HOUR, false);
+        assertThat(repo.remoteTagsFrom(tags("other-module-2.0.0")), equalTo(asList("other-module-2.0.0")));
+    }
+
+    @Test
+    public void aCorruptCacheIsIgnored() throws Exception {
+        cachingRepo(ONE_HOUR, false).allRemoteTags();
+        File[] cacheFiles = new File(project.local.getRepository().getDirectory(), RemoteTagCache.DIRECTORY_NAME).listFiles();
+        assertThat(cacheFiles.length, is(1));
+        FileUtils.writeStringToFile(cacheFiles[0], "not a cache");
+        tagOrigin("single-module-1.0.1");
+
+        assertThat(cachingRepo(ONE_HOUR, false).remoteTagsFrom(tags("single-module-1.0.1")), equalTo(asList("single-module-1.0.1")));
+    }
+
+    private LocalGitRepo cachingRepo(long maxAgeMillis, boolean refresh) {
+        LocalGitRepo repo = new LocalGitRepo(project.local, null);
+        repo.cacheRemoteTags(asList("single-module-1.0"), maxAgeMillis, refresh);
+        return repo;
+    }
+
+    private void tagOrigin(String name) throws GitAPIException {
+        project.origin.tag().setAnnotated(true).setName(name).setMessage("Some message").call();
+    }
+
+    private static List<AnnotatedTag> tags(String... tagNames) {
+        List<AnnotatedTag> tags = new ArrayList<AnnotatedTag>();
+        for (String tagName : tagNames) {
+            tags.add(AnnotatedTag.create(tagName, "1", 0));
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.Ref;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+
+public class RemoteTagIndexTest {
+
+    @Test
+    public void indexesTheRemoteTagsByNameAndVersion() {
+        RemoteTagIndex index = new RemoteTagIndex(refs("console-app-1.2.3", "console-app-1.2.4", "console-app-1.20.1", "core-utils-2.0", "not-a-release"));
+
+        assertThat(index.buildNumbersForVersion("console-app", "1.2"), containsInAnyOrder(3L, 4L));
+        assertThat(index.buildNumbersForVersion("core-utils", "2"), containsInAnyOrder(0L));
+        assertThat(index.buildNumbersForVersion("console-app", "1.3"), hasSize(0));
+        assertThat(index.hasTag("console-app-1.2.3"), is(true));
+        assertThat(index.hasTag("not-a-release"), is(true));
+        assertThat(index.hasTag("console-app-1.2"), is(false));
+    }
+
+    private static List<Ref> refs(String... tagNames) {
+        List<Ref> refs = new ArrayList<Ref>();
+        for (String tagName : tagNames) {
+            refs.add(new ObjectIdRef.Unpeeled(Ref.Storage.NETWORK, "refs/tags/" + tagName, ObjectId.zeroId()));
+        }
+        return refs;
+    }
+}
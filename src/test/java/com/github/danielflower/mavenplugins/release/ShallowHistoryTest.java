@@ -0,0 +1,153 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.junit.Before;
+import org.junit.Test;
+import scaffolding.Photocopier;
+import scaffolding.TestProject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModule;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assume.assumeTrue;
+
+public class ShallowHistoryTest {
+
+    private final TestProject project = TestProject.nestedProject();
+    private String serverUrl;
+    private Git clone;
+
+    @Before
+    public void releaseAndThenCloneShallowlyFromABareRepository() throws Exception {
+        assumeTrue(GitCliDiffDetector.isAvailable("git"));
+        saveFileInModule(project, "console-app", "1.0", 0);
+        project.commitRandomFile("core-utils");
+        for (int i = 0; i < 10; i++) {
+            project.commitRandomFile("console-app");
+        }
+
+        File server = Photocopier.folderForSampleProject("shallow-server").getAbsoluteFile();
+        Git.init().setBare(true).setDirectory(server).call();
+        serverUrl = "file://" + server.getPath();
+        project.local.push().setRemote(server.getPath())
+            .setRefSpecs(new RefSpec("refs/heads/master:refs/heads/master")).setPushTags().call();
+
+        File cloneDir = Photocopier.folderForSampleProject("shallow-clone").getAbsoluteFile();
+        GitCliDiffDetector.run(new File(".").getAbsoluteFile(), "git",
+            asList("clone", "--quiet", "--depth=3", serverUrl, cloneDir.getPath()), 0);
+        clone = Git.open(cloneDir);
+    }
+
+    @Test
+    public void tagsOlderThanTheCloneAreFetchedWithoutTheHistoryBeforeThem() throws Exception {
+        Repository repo = clone.getRepository();
+        assertThat(repo.getRef("refs/tags/console-app-1.0.0"), nullValue());
+
+        new ShallowHistory(repo, "git", serverUrl).fetchTags(asList("console-app-1.0.0"));
+
+        assertThat(tagsOf(clone).size(), is(1));
+        assertThat(commitsBefore(repo, "HEAD"), is(3));
+        assertThat(commitsBefore(repo, "refs/tags/console-app-1.0.0"), is(1));
+    }
+
+    @Test
+    public void theHistoryIsDeepenedUntilItReachesTheTags() throws Exception {
+        Repository repo = clone.getRepository();
+        ShallowHistory shallowHistory = new ShallowHistory(repo, "git", serverUrl);
+        shallowHistory.fetchTags(asList("console-app-1.0.0"));
+        Set<ObjectId> boundaryBefore = ShallowHistory.boundaryOf(repo);
+
+        TreeWalkingDiffDetector detector = new TreeWalkingDiffDetector(repo);
+        detector.deepenShallowHistoryWith(shallowHistory);
+
+        assertThat(detector.changedModules(modules()), equalTo(changedModules()));
+        assertThat(commitsBefore(repo, "HEAD"), is(not(3)));
+        assertThat(ShallowHistory.boundaryOf(repo), not(equalTo(boundaryBefore)));
+    }
+
+    @Test
+    public void theGitCommandLineDetectorAlsoDeepensTheHistory() throws Exception {
+        Repository repo = clone.getRepository();
+        ShallowHistory shallowHistory = new ShallowHistory(repo, "git", serverUrl);
+        shallowHistory.fetchTags(asList("console-app-1.0.0"));
+
+        GitCliDiffDetector detector = new GitCliDiffDetector(repo.getWorkTree(), "git");
+        detector.deepenShallowHistoryWith(shallowHistory);
+
+        assertThat(detector.changedModules(modules()), equalTo(changedModules()));
+        assertThat(commitsBefore(repo, "HEAD"), is(not(3)));
+    }
+
+    @Test
+    public void noChangedPathFilterIsKeptForTheBoundaryOfTheClone() throws Exception {
+        Repository repo = clone.getRepository();
+        new ShallowHistory(repo, "git", serverUrl).fetchTags(asList("console-app-1.0.0"));
+
+        new TreeWalkingDiffDetector(repo).changedModules(modules());
+
+        ChangedPathFilters filters = ChangedPathFilters.load(repo);
+        assertThat(filters.hasFilterFor(repo.resolve("HEAD")), is(true));
+        for (ObjectId boundaryCommit : ShallowHistory.boundaryOf(repo)) {
+            assertThat(filters.hasFilterFor(boundaryCommit), is(false));
+        }
+    }
+
+    @Test
+    public void aRepositoryThatIsNotAShallowCloneHasNoBoundary() throws Exception {
+        assertThat(ShallowHistory.isShallow(project.local.getRepository()), is(false));
+        assertThat(ShallowHistory.isShallow(clone.getRepository()), is(true));
+        assertThat(ShallowHistory.boundaryOf(clone.getRepository()), hasItem(clone.getRepository().resolve("HEAD~2")));
+    }
+
+    private List<DiffDetector.Module> modules() throws Exception {
+        List<AnnotatedTag> tags = ReleaseTagIndex.fromRepository(clone).tagsForVersion("console-app", "1.0");
+        assertThat(tags.size(), is(1));
+        List<DiffDetector.Module> modules = new ArrayList<DiffDetector.Module>();
+        for (String module : asList("core-utils", "console-app", "parent-module")) {
+            modules.add(new DiffDetector.Module(module, new ArrayList<String>(), tags));
+        }
+        return modules;
+    }
+
+    private static Set<String> changedModules() {
+        return new HashSet<String>(asList("core-utils", "console-app"));
+    }
+
+    private static List<String> tagsOf(Git git) throws Exception {
+        List<String> tags = new ArrayList<String>();
+        for (Ref ref : git.tagList().call()) {
+            tags.add(ref.getName());
+        }
+        return tags;
+    }
+
+    private static int commitsBefore(Repository repo, String revision) throws Exception {
+        RevWalk walk = new RevWalk(repo);
+        try {
+            walk.markStart(walk.parseCommit(repo.resolve(revision)));
+            int count = 0;
+            while (walk.next() != null) {
+                count++;
+            }
+            return count;
+        } finally {
+            walk.dispose();
+        }
+    }
+}
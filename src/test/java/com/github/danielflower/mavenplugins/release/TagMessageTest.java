@@ -0,0 +1,47 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TagMessageTest {
+
+    @Test
+    public void readsTheMessagesWrittenByEarlierVersionsOfThePlugin() {
+        TagMessage message = TagMessage.parse("{\"buildNumber\":\"12\",\"version\":\"1.2.3\"}");
+        assertThat(message.version(), equalTo("1.2.3"));
+        assertThat(message.buildNumber(), is(12L));
+    }
+
+    @Test
+    public void buildNumbersCanBeNumbersOrStrings() {
+        assertThat(TagMessage.parse("{ \"version\" : \"1.0\", \"buildNumber\" : 4 }").buildNumber(), is(4L));
+        assertThat(TagMessage.parse("{\"version\":\"1.0\",\"buildNumber\":\"not a number\"}").buildNumber(), is(0L));
+    }
+
+    @Test
+    public void messagesThatAreNotJsonObjectsAreTreatedAsVersionZero() {
+        for (String bad : new String[] { "Some message", "", "{\"version\":\"1.0\"", "[1, 2]", "{\"version\":\"1.0\"} extra" }) {
+            TagMessage message = TagMessage.parse(bad);
+            assertThat(bad, message.version(), equalTo("0"));
+            assertThat(bad, message.buildNumber(), is(0L));
+        }
+    }
+
+    @Test
+    public void otherFieldsAreKeptWhenTheMessageIsWrittenAgain() {
+        TagMessage message = TagMessage.parse("{\"version\":\"1.0\",\"buildNumber\":\"2\",\"extra\":{\"a\":[1,\"b\"]},\"flag\":true}");
+        assertThat(message.otherFields().get("extra"), equalTo("{\"a\":[1,\"b\"]}"));
+        assertThat(message.toJson(), equalTo("{\"version\":\"1.0\",\"buildNumber\":\"2\",\"extra\":{\"a\":[1,\"b\"]},\"flag\":true}"));
+    }
+
+    @Test
+    public void specialCharactersSurviveARoundTrip() {
+        String version = "1.0-\"quoted\"\\slash\n\u0001";
+        TagMessage message = TagMessage.parse(new TagMessage(version, 3).toJson());
+        assertThat(message.version(), equalTo(version));
+        assertThat(message.buildNumber(), is(3L));
+    }
+}
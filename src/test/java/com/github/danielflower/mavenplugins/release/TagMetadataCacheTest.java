@@ -0,0 +1,75 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.lib.Ref;
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.io.File;
+import java.util.List;
+
+import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModule;
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+public class TagMetadataCacheTest {
+
+    private final TestProject project = TestProject.independentVersionsProject();
+
+    @Test
+    public void tagsReadDuringOneRunAreRememberedForTheNext() throws Exception {
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.2", 3);
+        ReleaseTagIndex index = ReleaseTagIndex.fromRepository(project.local);
+        readAll(index.tagsForVersion("console-app", "1.2"));
+        index.saveMetadataCache();
+
+        Ref ref = project.local.getRepository().getRef("console-app-1.2.3");
+        TagMetadataCache.Entry entry = TagMetadataCache.load(project.local.getRepository()).get(ref.getObjectId());
+        assertThat(entry.version, equalTo("1.2"));
+        assertThat(entry.buildNumber, equalTo(3L));
+        assertThat(entry.taggedCommitId, equalTo(project.local.getRepository().resolve("HEAD")));
+
+        assertThat(ReleaseTagIndex.fromRepository(project.local).tagsForVersion("console-app", "1.2"), containsInAnyOrder(tag));
+    }
+
+    @Test
+    public void newTagsAreAddedToAnExistingCache() throws Exception {
+        saveFileInModule(project, "console-app", "1.2", 3);
+        ReleaseTagIndex index = ReleaseTagIndex.fromRepository(project.local);
+        readAll(index.tagsForVersion("console-app", "1.2"));
+        index.saveMetadataCache();
+
+        saveFileInModule(project, "console-app", "1.2", 4);
+        index = ReleaseTagIndex.fromRepository(project.local);
+        readAll(index.tagsForVersion("console-app", "1.2"));
+        index.saveMetadataCache();
+
+        TagMetadataCache cache = TagMetadataCache.load(project.local.getRepository());
+        for (String tagName : new String[]{"console-app-1.2.3", "console-app-1.2.4"}) {
+            assertThat(cache.get(project.local.getRepository().getRef(tagName).getObjectId()), is(notNullValue()));
+        }
+    }
+
+    @Test
+    public void aCorruptCacheIsIgnored() throws Exception {
+        AnnotatedTag tag = saveFileInModule(project, "console-app", "1.2", 3);
+        File cacheFile = new File(project.local.getRepository().getDirectory(), TagMetadataCache.FILE_NAME);
+        FileUtils.writeStringToFile(cacheFile, "this is not a cache\n\u0000garbage", "UTF-8");
+
+        ReleaseTagIndex index = ReleaseTagIndex.fromRepository(project.local);
+        List<AnnotatedTag> tags = index.tagsForVersion("console-app", "1.2");
+        assertThat(tags, containsInAnyOrder(tag));
+        readAll(tags);
+        index.saveMetadataCache();
+
+        Ref ref = project.local.getRepository().getRef("console-app-1.2.3");
+        assertThat(TagMetadataCache.load(project.local.getRepository()).get(ref.getObjectId()).buildNumber, equalTo(3L));
+    }
+
+    private static void readAll(List<AnnotatedTag> tags) {
+        for (AnnotatedTag tag : tags) {
+            tag.version();
+        }
+    }
+}